@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.osgi.framework.Constants;
+
+/**
+ * Synthetic configuration data for the benchmarks
+ */
+public final class BenchmarkData {
+
+    /** Shape of the generated values */
+    public enum Shape {
+        /** Strings, numbers and booleans */
+        SCALAR,
+        /** Primitive arrays with 16 elements */
+        PRIMITIVE_ARRAY,
+        /** String arrays with 256 elements */
+        LARGE_STRING_ARRAY
+    }
+
+    private BenchmarkData() {
+        // no instances
+    }
+
+    /**
+     * Create a configuration dictionary
+     * @param size The number of keys
+     * @param shape The shape of the values
+     * @param variant Different variants result in different values for every 10th key
+     * @return The dictionary
+     */
+    static Dictionary<String, Object> create(final int size, final Shape shape, final int variant) {
+        final Dictionary<String, Object> dict = new Hashtable<>();
+        for (int i = 0; i < size; i++) {
+            final int seed = i % 10 == 0 ? i + variant : i;
+            dict.put("property.".concat(String.valueOf(i)), value(shape, seed));
+        }
+        dict.put(Constants.SERVICE_PID, "org.apache.sling.benchmark");
+        return dict;
+    }
+
+    /**
+     * Create a value of the given shape
+     */
+    static Object value(final Shape shape, final int seed) {
+        switch (shape) {
+            case PRIMITIVE_ARRAY:
+                final long[] longs = new long[16];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = seed * 31L + i;
+                }
+                return longs;
+            case LARGE_STRING_ARRAY:
+                final String[] strings = new String[256];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = "value-" + seed + "-" + i;
+                }
+                return strings;
+            default:
+                switch (seed % 3) {
+                    case 0:
+                        return "value-" + seed;
+                    case 1:
+                        return (long) seed;
+                    default:
+                        return seed % 2 == 0;
+                }
+        }
+    }
+
+    /**
+     * Create a copy of a dictionary with copies of all array values
+     */
+    static Dictionary<String, Object> copy(final Dictionary<String, Object> dict) {
+        final Dictionary<String, Object> result = new Hashtable<>();
+        final Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            final String key = keys.nextElement();
+            final Object value = dict.get(key);
+            if (value instanceof long[]) {
+                result.put(key, ((long[]) value).clone());
+            } else if (value instanceof String[]) {
+                result.put(key, ((String[]) value).clone());
+            } else {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create dictionaries to be merged, each layer overwrites a part of the keys of the previous one
+     */
+    static List<Dictionary<String, Object>> layers(final int size, final Shape shape, final int depth) {
+        final List<Dictionary<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            result.add(create(Math.max(1, size >> i), shape, i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Dictionary;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the dictionary operations of {@link ConfigUtil} used by the install tasks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigUtilBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int size;
+
+    @Param({"SCALAR", "PRIMITIVE_ARRAY", "LARGE_STRING_ARRAY"})
+    public BenchmarkData.Shape shape;
+
+    private Dictionary<String, Object> config;
+
+    private Dictionary<String, Object> sameConfig;
+
+    private Dictionary<String, Object> otherConfig;
+
+    private Object value;
+
+    private Object sameValue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.config = BenchmarkData.create(this.size, this.shape, 0);
+        this.sameConfig = BenchmarkData.copy(this.config);
+        this.otherConfig = BenchmarkData.create(this.size, this.shape, 1);
+        this.value = this.config.get("property.1");
+        this.sameValue = this.sameConfig.get("property.1");
+    }
+
+    @Benchmark
+    public boolean isSameDataEqual() {
+        return ConfigUtil.isSameData(this.config, this.sameConfig);
+    }
+
+    @Benchmark
+    public boolean isSameDataDifferent() {
+        return ConfigUtil.isSameData(this.config, this.otherConfig);
+    }
+
+    @Benchmark
+    public boolean isSameValue() {
+        return ConfigUtil.isSameValue(this.value, this.sameValue);
+    }
+
+    @Benchmark
+    public int filterConfiguration() {
+        return ConfigUtil.filterConfiguration(this.config, this.sameConfig).size();
+    }
+
+}
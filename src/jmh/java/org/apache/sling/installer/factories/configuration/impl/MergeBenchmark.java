@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Dictionary;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for merging the dictionaries of several resources with {@link LayeredDictionary}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int size;
+
+    @Param({"SCALAR", "PRIMITIVE_ARRAY", "LARGE_STRING_ARRAY"})
+    public BenchmarkData.Shape shape;
+
+    @Param({"2", "4", "8"})
+    public int depth;
+
+    private List<Dictionary<String, Object>> layers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.layers = BenchmarkData.layers(this.size, this.shape, this.depth);
+    }
+
+    @Benchmark
+    public Dictionary<String, Object> layeredFlatten() {
+        return new LayeredDictionary(this.layers).flatten();
+    }
+
+    @Benchmark
+    public long layeredFingerprint() {
+        return ConfigFingerprint.compute(new LayeredDictionary(this.layers));
+    }
+}
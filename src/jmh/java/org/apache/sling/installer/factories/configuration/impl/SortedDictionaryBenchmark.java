@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the iteration of a {@link SortedDictionary}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SortedDictionaryBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int size;
+
+    private SortedDictionary<String, Object> dictionary;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.dictionary = new SortedDictionary<>(BenchmarkData.create(this.size, BenchmarkData.Shape.SCALAR, 0));
+    }
+
+    @Benchmark
+    public void iterateKeysAndValues(final Blackhole blackhole) {
+        final Enumeration<String> keys = this.dictionary.keys();
+        while (keys.hasMoreElements()) {
+            final String key = keys.nextElement();
+            blackhole.consume(key);
+            blackhole.consume(this.dictionary.get(key));
+        }
+    }
+
+    @Benchmark
+    public void iterateValues(final Blackhole blackhole) {
+        final Enumeration<Object> values = this.dictionary.elements();
+        while (values.hasMoreElements()) {
+            blackhole.consume(values.nextElement());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration;
+
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Service providing metrics about the configuration operations
+ * performed by the installer.
+ *
+ * Counters are monotonic since the start of the bundle. Latencies
+ * are reported in microseconds; percentiles are approximations.
+ * @since 1.2
+ */
+@ProviderType
+public interface ConfigurationInstallerMetrics {
+
+    /**
+     * Get a snapshot of the current metrics.
+     * @return An immutable map of metric names to values, sorted by name.
+     */
+    Map<String, Number> getMetrics();
+}
@@ -18,11 +18,14 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.io.IOException;
 import java.util.Dictionary;
 
 import org.apache.sling.installer.api.tasks.InstallTask;
 import org.apache.sling.installer.api.tasks.TaskResourceGroup;
 import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,11 +44,16 @@ abstract class AbstractConfigTask extends InstallTask {
     /** Configuration admin. */
     private final ConfigurationAdmin configAdmin;
 
+    /** Configuration index or null. */
+    private final ConfigurationIndex configIndex;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    AbstractConfigTask(final TaskResourceGroup r, final ConfigurationAdmin configAdmin) {
+    AbstractConfigTask(
+            final TaskResourceGroup r, final ConfigurationAdmin configAdmin, final ConfigurationIndex configIndex) {
         super(r);
         this.configAdmin = configAdmin;
+        this.configIndex = configIndex;
         this.configPid = (String) getResource().getAttribute(Constants.SERVICE_PID);
         this.factoryPid = (String) getResource().getAttribute(ConfigurationAdmin.SERVICE_FACTORYPID);
     }
@@ -62,6 +70,13 @@ abstract class AbstractConfigTask extends InstallTask {
         }
     }
 
+    /**
+     * Get the lock guarding the configuration of this task
+     */
+    protected Object getLock() {
+        return Coordinator.SHARED.getLock(this.configPid, this.factoryPid);
+    }
+
     /**
      * Get the configuration admin - if available
      */
@@ -69,6 +84,21 @@ abstract class AbstractConfigTask extends InstallTask {
         return this.configAdmin;
     }
 
+    /**
+     * Get the configuration index - if enabled
+     */
+    protected ConfigurationIndex getConfigurationIndex() {
+        return this.configIndex;
+    }
+
+    /**
+     * Get the configuration for this task
+     * @return The configuration or {@code null}
+     */
+    protected Configuration getConfiguration() throws IOException, InvalidSyntaxException {
+        return ConfigUtil.getConfiguration(this.configAdmin, this.configIndex, this.factoryPid, this.configPid);
+    }
+
     protected Dictionary<String, Object> getDictionary() {
         return this.getResource().getDictionary();
     }
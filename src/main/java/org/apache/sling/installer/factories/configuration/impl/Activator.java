@@ -38,6 +38,33 @@ public class Activator implements BundleActivator {
     /** Property for configuration merge schemes. */
     private static final String PROP_MERGE_SCHEMES = "sling.installer.config.mergeSchemes";
 
+    /** Property for enabling the configuration index. */
+    private static final String PROP_INDEX_CONFIGURATIONS = "sling.installer.config.indexConfigurations";
+
+    /** Property for enabling asynchronous write back of configuration changes. */
+    private static final String PROP_ASYNC_WRITE_BACK = "sling.installer.config.asyncWriteBack";
+
+    /** Property for the number of threads migrating old style factory configurations. */
+    private static final String PROP_MIGRATION_THREADS = "sling.installer.config.migrationThreads";
+
+    /** Property for enabling the batched lookup of configurations per installer cycle. */
+    private static final String PROP_BATCH_LOOKUPS = "sling.installer.config.batchLookups";
+
+    /** Property for recognizing own changes by the change count of the configuration. */
+    private static final String PROP_CHANGE_COUNT_SUPPRESSION = "sling.installer.config.changeCountSuppression";
+
+    /** Property for the pids of configurations which are not written back to the installer. */
+    private static final String PROP_EXCLUDED_PIDS = "sling.installer.config.excludedPids";
+
+    /** Property for avoiding writes which do not change a configuration. */
+    private static final String PROP_MINIMIZE_WRITES = "sling.installer.config.minimizeWrites";
+
+    /**
+     * Property for the number of milliseconds writes of a configuration are delayed to coalesce them.
+     * Only read if {@link #PROP_MINIMIZE_WRITES} is enabled.
+     */
+    private static final String PROP_WRITE_DEBOUNCE = "sling.installer.config.writeDebounce";
+
     /** Services listener. */
     private ServicesListener listener;
 
@@ -45,6 +72,23 @@ public class Activator implements BundleActivator {
 
     public static List<String> MERGE_SCHEMES;
 
+    public static boolean INDEX_CONFIGURATIONS;
+
+    public static boolean ASYNC_WRITE_BACK;
+
+    public static int MIGRATION_THREADS;
+
+    public static boolean BATCH_LOOKUPS;
+
+    public static boolean CHANGE_COUNT_SUPPRESSION;
+
+    static PidMatcher EXCLUDED_PIDS;
+
+    public static boolean MINIMIZE_WRITES;
+
+    /** Delay for debounced writes, always 0 unless {@link #MINIMIZE_WRITES} is enabled. */
+    public static long WRITE_DEBOUNCE;
+
     /**
      * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
      */
@@ -60,6 +104,36 @@ public class Activator implements BundleActivator {
             MERGE_SCHEMES =
                     Arrays.asList(context.getProperty(PROP_MERGE_SCHEMES).split(","));
         }
+        if (context.getProperty(PROP_INDEX_CONFIGURATIONS) != null) {
+            INDEX_CONFIGURATIONS = Boolean.parseBoolean(context.getProperty(PROP_INDEX_CONFIGURATIONS));
+        }
+        if (context.getProperty(PROP_ASYNC_WRITE_BACK) != null) {
+            ASYNC_WRITE_BACK = Boolean.parseBoolean(context.getProperty(PROP_ASYNC_WRITE_BACK));
+        }
+        if (context.getProperty(PROP_MIGRATION_THREADS) != null) {
+            try {
+                MIGRATION_THREADS = Integer.parseInt(context.getProperty(PROP_MIGRATION_THREADS));
+            } catch (final NumberFormatException nfe) {
+                MIGRATION_THREADS = 0;
+            }
+        }
+        if (context.getProperty(PROP_BATCH_LOOKUPS) != null) {
+            BATCH_LOOKUPS = Boolean.parseBoolean(context.getProperty(PROP_BATCH_LOOKUPS));
+        }
+        if (context.getProperty(PROP_CHANGE_COUNT_SUPPRESSION) != null) {
+            CHANGE_COUNT_SUPPRESSION = Boolean.parseBoolean(context.getProperty(PROP_CHANGE_COUNT_SUPPRESSION));
+        }
+        EXCLUDED_PIDS = PidMatcher.parse(context.getProperty(PROP_EXCLUDED_PIDS));
+        if (context.getProperty(PROP_MINIMIZE_WRITES) != null) {
+            MINIMIZE_WRITES = Boolean.parseBoolean(context.getProperty(PROP_MINIMIZE_WRITES));
+        }
+        if (MINIMIZE_WRITES && context.getProperty(PROP_WRITE_DEBOUNCE) != null) {
+            try {
+                WRITE_DEBOUNCE = Long.parseLong(context.getProperty(PROP_WRITE_DEBOUNCE));
+            } catch (final NumberFormatException nfe) {
+                WRITE_DEBOUNCE = 0;
+            }
+        }
         this.listener = new ServicesListener(context);
     }
 
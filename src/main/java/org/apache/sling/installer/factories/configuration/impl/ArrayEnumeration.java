@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumeration over the elements at the indexes of an array
+ * @param <T> The type of the elements
+ */
+abstract class ArrayEnumeration<T> implements Enumeration<T> {
+
+    private final int size;
+
+    private int index;
+
+    ArrayEnumeration(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * Get the element at the index
+     * @param index The index
+     * @return The element
+     */
+    abstract T get(int index);
+
+    @Override
+    public boolean hasMoreElements() {
+        return index < size;
+    }
+
+    @Override
+    public T nextElement() {
+        if (index >= size) {
+            throw new NoSuchElementException();
+        }
+        return get(index++);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.Serializable;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Objects;
+
+/**
+ * Compact, unsynchronized dictionary.
+ *
+ * Keys and values are kept in a single array using open addressing with
+ * linear probing, no entry objects are created. Unlike {@link java.util.Hashtable}
+ * the methods are not synchronized, instances must not be shared between
+ * threads while they are modified. The enumerations work on a snapshot of
+ * the keys, entries can be removed while enumerating.
+ */
+public final class CompactDictionary extends Dictionary<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_CAPACITY = 8;
+
+    /** Keys at even, values at odd indexes */
+    private Object[] table;
+
+    /** Number of entries */
+    private int size;
+
+    public CompactDictionary() {
+        this(0);
+    }
+
+    /**
+     * Create a new dictionary
+     * @param expectedSize The expected number of entries
+     */
+    public CompactDictionary(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.table = new Object[capacity * 2];
+    }
+
+    /**
+     * Copy a dictionary
+     * @param dict The dictionary
+     * @return A new dictionary with the same entries
+     */
+    public static CompactDictionary copyOf(final Dictionary<String, Object> dict) {
+        final CompactDictionary result = new CompactDictionary(dict.size());
+        final Enumeration<String> e = dict.keys();
+        while (e.hasMoreElements()) {
+            final String key = e.nextElement();
+            final Object value = dict.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final int slot = this.find(key);
+        return slot < 0 ? null : this.table[slot + 1];
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        Objects.requireNonNull(value);
+        int slot = this.find(key);
+        if (slot >= 0) {
+            final Object old = this.table[slot + 1];
+            this.table[slot + 1] = value;
+            return old;
+        }
+        if ((this.size + 1) * 4 > this.table.length) {
+            // keep the load factor at or below 0.5
+            this.resize(this.table.length);
+        }
+        slot = this.slot(key);
+        while (this.table[slot] != null) {
+            slot = this.next(slot);
+        }
+        this.table[slot] = key;
+        this.table[slot + 1] = value;
+        this.size++;
+        return null;
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        int slot = this.find(key);
+        if (slot < 0) {
+            return null;
+        }
+        final Object old = this.table[slot + 1];
+        // move following entries of the same probe sequence back into the gap
+        int next = this.next(slot);
+        while (this.table[next] != null) {
+            final int home = this.slot(this.table[next]);
+            final boolean movable = next > slot ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                this.table[slot] = this.table[next];
+                this.table[slot + 1] = this.table[next + 1];
+                slot = next;
+            }
+            next = this.next(next);
+        }
+        this.table[slot] = null;
+        this.table[slot + 1] = null;
+        this.size--;
+        return old;
+    }
+
+    @Override
+    public Enumeration<String> keys() {
+        final String[] k = this.snapshot();
+        return new ArrayEnumeration<String>(k.length) {
+            @Override
+            String get(final int index) {
+                return k[index];
+            }
+        };
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        final String[] k = this.snapshot();
+        return new ArrayEnumeration<Object>(k.length) {
+            @Override
+            Object get(final int index) {
+                return CompactDictionary.this.get(k[index]);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < this.table.length; i += 2) {
+            if (this.table[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(this.table[i]).append('=').append(this.table[i + 1]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Find the slot of a key
+     * @param key The key
+     * @return The index of the key in the table or {@code -1}
+     */
+    private int find(final Object key) {
+        int slot = this.slot(key);
+        Object k;
+        while ((k = this.table[slot]) != null) {
+            if (k.equals(key)) {
+                return slot;
+            }
+            slot = this.next(slot);
+        }
+        return -1;
+    }
+
+    private int slot(final Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & ((this.table.length >> 1) - 1)) << 1;
+    }
+
+    private int next(final int slot) {
+        final int next = slot + 2;
+        return next == this.table.length ? 0 : next;
+    }
+
+    private void resize(final int capacity) {
+        final Object[] old = this.table;
+        this.table = new Object[capacity * 2];
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != null) {
+                int slot = this.slot(old[i]);
+                while (this.table[slot] != null) {
+                    slot = this.next(slot);
+                }
+                this.table[slot] = old[i];
+                this.table[slot + 1] = old[i + 1];
+            }
+        }
+    }
+
+    private String[] snapshot() {
+        final String[] result = new String[this.size];
+        int pos = 0;
+        for (int i = 0; i < this.table.length; i += 2) {
+            if (this.table[i] != null) {
+                result[pos++] = (String) this.table[i];
+            }
+        }
+        return result;
+    }
+}
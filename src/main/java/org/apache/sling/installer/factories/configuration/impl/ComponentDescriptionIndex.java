@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
+
+/**
+ * Index of the component descriptions by configuration pid.
+ *
+ * For each pid the default property values of all bound component descriptions
+ * are computed up front. A property has a default value if all bound component
+ * descriptions which define it have the same value.
+ */
+class ComponentDescriptionIndex {
+
+    /** Marker for properties with different values in different component descriptions. */
+    private static final Object AMBIGUOUS = new Object();
+
+    /** The component descriptions bound to a configuration pid */
+    static final class Entry {
+
+        private final Set<ComponentDescriptionDTO> descriptions = new LinkedHashSet<>();
+
+        private final Map<String, Object> defaults = new HashMap<>();
+
+        private void add(final ComponentDescriptionDTO dto) {
+            if (this.descriptions.add(dto) && dto.properties != null) {
+                for (final Map.Entry<String, Object> prop : dto.properties.entrySet()) {
+                    if (prop.getValue() != null) {
+                        this.defaults.merge(
+                                prop.getKey(), prop.getValue(), (old, value) -> old.equals(value) ? old : AMBIGUOUS);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get the bound component descriptions
+         * @return The component descriptions
+         */
+        @NotNull
+        Set<ComponentDescriptionDTO> getDescriptions() {
+            return this.descriptions;
+        }
+
+        /**
+         * Get the default value of a property
+         * @param key The property name
+         * @return The value or {@code null} if no component description defines the property
+         *         or if the values differ
+         */
+        @Nullable
+        Object getDefaultValue(@NotNull final String key) {
+            final Object value = this.defaults.get(key);
+            return value == AMBIGUOUS ? null : value;
+        }
+    }
+
+    /** Entries by configuration pid */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** The change count of the service component runtime this index has been built for */
+    private final Object changeCount;
+
+    ComponentDescriptionIndex(
+            @NotNull final Collection<ComponentDescriptionDTO> descriptions, @Nullable final Object changeCount) {
+        this.changeCount = changeCount;
+        for (final ComponentDescriptionDTO dto : descriptions) {
+            for (final String configPid : dto.configurationPid) {
+                // the same PID might be bound to multiple component descriptions
+                this.entries.computeIfAbsent(configPid, k -> new Entry()).add(dto);
+            }
+        }
+    }
+
+    /**
+     * Check whether the index is up to date
+     * @param currentChangeCount The current change count of the service component runtime
+     * @return {@code true} if the index can be used
+     */
+    boolean isCurrent(@Nullable final Object currentChangeCount) {
+        return currentChangeCount != null && currentChangeCount.equals(this.changeCount);
+    }
+
+    /**
+     * Get the component descriptions for a configuration pid
+     * @param configPid The configuration pid
+     * @return The entry or {@code null}
+     */
+    @Nullable
+    Entry get(@NotNull final String configPid) {
+        return this.entries.get(configPid);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.lang.reflect.Array;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.osgi.service.cm.Configuration;
+
+/**
+ * Order independent 64 bit fingerprint of configuration data.
+ *
+ * Two dictionaries which are the same according to {@link ConfigUtil#isSameData(Dictionary, Dictionary)}
+ * have the same fingerprint: values are hashed by their string representation and arrays element
+ * by element, ignoring the same properties. Different data results in a different fingerprint
+ * with a high probability, therefore different fingerprints rule out the same data without
+ * comparing it. A match is confirmed by comparing the data, as fingerprints might collide.
+ *
+ * The fingerprint of a resource is kept as a temporary attribute of the resource, the
+ * fingerprint of a configuration is cached per pid as long as the same configuration
+ * object is used and its change count does not change. A configuration deleted and
+ * created again is a different object, even if its change count is the same.
+ */
+public class ConfigFingerprint {
+
+    public static final ConfigFingerprint SHARED = new ConfigFingerprint();
+
+    /** Name of the temporary resource attribute holding the fingerprint. */
+    private static final String ATTR_FINGERPRINT = ConfigFingerprint.class.getName();
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Tag for array values, which are never the same as a single value. */
+    private static final long ARRAY_TAG = 0x9e3779b97f4a7c15L;
+
+    /** Cached fingerprint of a configuration */
+    private static final class Entry {
+        final Configuration configuration;
+        final long changeCount;
+        final boolean hasProperties;
+        final long fingerprint;
+
+        Entry(
+                final Configuration configuration,
+                final long changeCount,
+                final boolean hasProperties,
+                final long fingerprint) {
+            this.configuration = configuration;
+            this.changeCount = changeCount;
+            this.hasProperties = hasProperties;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /** Cached fingerprints by pid. */
+    private final Map<String, Entry> configurations = new ConcurrentHashMap<>();
+
+    /**
+     * Check whether a configuration contains the data of a dictionary, same as
+     * {@link ConfigUtil#isSameData(Dictionary, Dictionary)}. The data is only
+     * compared if the fingerprints match.
+     * @param cfg The configuration
+     * @param fingerprint The fingerprint of the dictionary
+     * @param dict The dictionary
+     * @return {@code true} if the data is the same
+     * @throws IllegalStateException If the configuration has been deleted
+     */
+    public boolean isSameData(final Configuration cfg, final long fingerprint, final Dictionary<String, Object> dict) {
+        return this.matches(cfg, fingerprint) && ConfigUtil.isSameData(cfg.getProperties(), dict);
+    }
+
+    /**
+     * Check whether the fingerprint of a configuration matches
+     * @param cfg The configuration
+     * @param fingerprint The fingerprint
+     * @return {@code false} if the data is different, {@code true} if it might be the same
+     * @throws IllegalStateException If the configuration has been deleted
+     */
+    boolean matches(final Configuration cfg, final long fingerprint) {
+        final String pid = cfg.getPid();
+        // get the change count first, if the configuration is updated concurrently
+        // the newer properties are cached with the old change count and are
+        // calculated again on the next call
+        final long changeCount = cfg.getChangeCount();
+        Entry entry = this.configurations.get(pid);
+        if (entry == null || entry.configuration != cfg || entry.changeCount != changeCount) {
+            final Dictionary<String, Object> props = cfg.getProperties();
+            entry = new Entry(cfg, changeCount, props != null, compute(props));
+            this.configurations.put(pid, entry);
+        }
+        return entry.hasProperties && entry.fingerprint == fingerprint;
+    }
+
+    /**
+     * Remove the cached fingerprint of a deleted configuration
+     * @param pid The pid of the configuration
+     */
+    public void remove(final String pid) {
+        this.configurations.remove(pid);
+    }
+
+    /**
+     * Remove all cached fingerprints
+     */
+    public void clear() {
+        this.configurations.clear();
+    }
+
+    /**
+     * Get the fingerprint of the dictionary of a resource
+     * @param rsrc The resource
+     * @return The fingerprint
+     */
+    public static long get(final TaskResource rsrc) {
+        final Object value = rsrc.getTemporaryAttribute(ATTR_FINGERPRINT);
+        if (value instanceof Long) {
+            return (Long) value;
+        }
+        final long fingerprint = compute(rsrc.getDictionary());
+        rsrc.setTemporaryAttribute(ATTR_FINGERPRINT, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Calculate the fingerprint of a dictionary
+     * @param dict The dictionary, might be {@code null}
+     * @return The fingerprint
+     */
+    public static long compute(final Dictionary<String, Object> dict) {
+        if (dict == null) {
+            return 0;
+        }
+        long result = 0;
+        int count = 0;
+        final Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            final String key = keys.nextElement();
+            if (!ConfigUtil.IGNORED_PROPERTIES.contains(key)) {
+                long hash = mix(hash(FNV_OFFSET, key));
+                final Object value = dict.get(key);
+                if (value != null && value.getClass().isArray()) {
+                    final int length = Array.getLength(value);
+                    hash = mix(hash ^ ARRAY_TAG ^ length);
+                    for (int i = 0; i < length; i++) {
+                        hash = mix(hash(hash, String.valueOf(Array.get(value, i))));
+                    }
+                } else {
+                    hash = mix(hash(hash, String.valueOf(value)));
+                }
+                // addition is independent of the order of the keys
+                result += hash;
+                count++;
+            }
+        }
+        return mix(result ^ count);
+    }
+
+    private static long hash(long hash, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of murmur3, spreads all bits of the input
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.sling.installer.api.tasks.InstallationContext;
 import org.apache.sling.installer.api.tasks.ResourceState;
@@ -41,8 +42,28 @@ public class ConfigInstallTask extends AbstractConfigTask {
 
     private static final String CONFIG_INSTALL_ORDER = "20-";
 
+    /** Outcome of an execution which scheduled the write, the state is set in a later installer cycle. */
+    private static final String OUTCOME_SCHEDULED = "scheduled";
+
     public ConfigInstallTask(final TaskResourceGroup group, final ConfigurationAdmin configAdmin) {
-        super(group, configAdmin);
+        this(group, configAdmin, null);
+    }
+
+    /** Writer for debounced writes or null */
+    private final DebouncedWriter writer;
+
+    public ConfigInstallTask(
+            final TaskResourceGroup group, final ConfigurationAdmin configAdmin, final ConfigurationIndex configIndex) {
+        this(group, configAdmin, configIndex, null);
+    }
+
+    public ConfigInstallTask(
+            final TaskResourceGroup group,
+            final ConfigurationAdmin configAdmin,
+            final ConfigurationIndex configIndex,
+            final DebouncedWriter writer) {
+        super(group, configAdmin, configIndex);
+        this.writer = writer;
     }
 
     @Override
@@ -55,6 +76,7 @@ public class ConfigInstallTask extends AbstractConfigTask {
         Dictionary<String, Object> properties = super.getDictionary();
 
         if (Activator.MERGE_SCHEMES != null) {
+            final Object event = InstallerEvents.begin(InstallerEvents.Type.MERGE);
             final List<Dictionary<String, Object>> propertiesList = new ArrayList<>();
             propertiesList.add(properties);
             final Iterator<TaskResource> iter = this.getResourceGroup().getActiveResourceIterator();
@@ -70,61 +92,33 @@ public class ConfigInstallTask extends AbstractConfigTask {
                 }
             }
             if (propertiesList.size() > 1) {
-                properties = ConfigUtil.mergeReverseOrder(propertiesList);
+                properties = new LayeredDictionary(propertiesList);
             }
+            InstallerEvents.end(
+                    event, this.getRealPID(), this.factoryPid, propertiesList.size() > 1 ? "merged" : "single");
         }
         return properties;
     }
 
     @Override
     public void execute(final InstallationContext ctx) {
-        synchronized (Coordinator.SHARED) {
-            // Get or create configuration, but do not
-            // update if the new one has the same values.
+        final long start = System.nanoTime();
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.INSTALL);
+        String outcome = "retry";
+        synchronized (this.getLock()) {
+            ConfigurationMetrics.SHARED.lockAcquired(start);
             final Dictionary<String, Object> properties = this.getDictionary();
-            boolean created = false;
+            // a successful scheduled write is detected as same data,
+            // a failed scheduled write is retried once in this cycle
+            final boolean debounce = this.writer != null && this.writer.getResult(this.getRealPID()) == null;
             try {
-                String location = (String) properties.get(ConfigurationConstants.PROPERTY_BUNDLE_LOCATION);
-                if (location == null) {
-                    location = Activator.DEFAULT_LOCATION; // default
-                } else if (location.length() == 0) {
-                    location = null;
-                }
-
-                Configuration config =
-                        ConfigUtil.getConfiguration(this.getConfigurationAdmin(), this.factoryPid, this.configPid);
-                if (config == null) {
-
-                    config = ConfigUtil.createConfiguration(
-                            this.getConfigurationAdmin(), this.factoryPid, this.configPid, location);
-                    created = true;
-                } else {
-                    if (ConfigUtil.isSameData(config.getProperties(), properties)) {
-                        this.getLogger()
-                                .debug(
-                                        "Configuration {} already installed with same data, update request ignored: {}",
-                                        config.getPid(),
-                                        getResource());
-                        config = null;
-                    } else {
-                        config.setBundleLocation(location);
-                    }
+                outcome = this.write(ctx, properties, debounce);
+                if (outcome != OUTCOME_SCHEDULED) {
+                    // in any case set the state to "INSTALLED"
+                    // (it doesn't matter if the configuration hasn't been updated as it has been in the correct
+                    // state already)
+                    this.setFinishedState(ResourceState.INSTALLED);
                 }
-
-                if (config != null) {
-                    config.update(properties);
-                    ctx.log("Installed configuration {} from resource {}", config.getPid(), getResource());
-                    this.getLogger()
-                            .debug("Configuration " + config.getPid()
-                                    + " " + (created ? "created" : "updated")
-                                    + " from " + getResource());
-                    final Operation op = new Coordinator.Operation(config.getPid(), config.getFactoryPid(), false);
-                    Coordinator.SHARED.add(op);
-                }
-                // in any case set the state to "INSTALLED"
-                // (it doesn't matter if the configuration hasn't been updated as it has been in the correct state
-                // already)
-                this.setFinishedState(ResourceState.INSTALLED);
             } catch (IOException | IllegalStateException e) {
                 this.getLogger()
                         .debug(
@@ -136,7 +130,135 @@ public class ConfigInstallTask extends AbstractConfigTask {
                         "Exception during installation of config {0} : {1}", this.getResource(), e.getMessage());
                 this.getLogger().error(message, e);
                 this.setFinishedState(ResourceState.IGNORED, null, message);
+                outcome = "ignored";
+            }
+            ConfigurationMetrics.SHARED.installExecuted(start);
+        }
+        InstallerEvents.end(event, this.getRealPID(), this.factoryPid, outcome);
+    }
+
+    /**
+     * Schedule the write of the configuration with the {@link DebouncedWriter}
+     * @param properties The properties
+     * @return {@code false} if the writer has been stopped
+     */
+    private boolean schedule(final Dictionary<String, Object> properties) {
+        if (this.writer.schedule(this.getRealPID(), this.getLock(), () -> this.writeScheduled(properties))) {
+            this.getLogger().debug("Scheduled write of configuration {} from {}", getRealPID(), getResource());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Execute a write scheduled with the {@link DebouncedWriter}.
+     * Failures are not retried by the writer, the next execution of
+     * this task handles them.
+     * @param properties The properties
+     * @return {@code true} if the configuration has been written
+     */
+    private boolean writeScheduled(final Dictionary<String, Object> properties) {
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.INSTALL);
+        String outcome = "retry";
+        try {
+            outcome = this.write(null, properties, false);
+            return true;
+        } catch (Exception e) {
+            this.getLogger()
+                    .debug(
+                            "Exception during scheduled installation of config " + this.getResource() + " : "
+                                    + e.getMessage() + ". Retrying later.",
+                            e);
+            return false;
+        } finally {
+            InstallerEvents.end(event, this.getRealPID(), this.factoryPid, outcome);
+        }
+    }
+
+    /**
+     * Get or create the configuration and update it, unless it already has the same values.
+     * The caller must hold the lock of the configuration.
+     * @param ctx The installation context or {@code null}
+     * @param properties The properties
+     * @param debounce Whether a necessary write is scheduled with the {@link DebouncedWriter}
+     * @return The outcome, {@link #OUTCOME_SCHEDULED} if the write has been scheduled
+     * @throws IOException If the configuration can't be read or written
+     * @throws IllegalStateException If the configuration has been deleted in the meantime
+     */
+    private String write(
+            final InstallationContext ctx, final Dictionary<String, Object> properties, final boolean debounce)
+            throws Exception {
+        String outcome = "unchanged";
+        boolean created = false;
+        try {
+            String location = (String) properties.get(ConfigurationConstants.PROPERTY_BUNDLE_LOCATION);
+            if (location == null) {
+                location = Activator.DEFAULT_LOCATION; // default
+            } else if (location.length() == 0) {
+                location = null;
+            }
+
+            Configuration config = this.getConfiguration();
+            if (config == null) {
+                if (debounce && this.schedule(properties)) {
+                    return OUTCOME_SCHEDULED;
+                }
+                config = ConfigUtil.createConfiguration(
+                        this.getConfigurationAdmin(), this.factoryPid, this.configPid, location);
+                created = true;
+                if (this.getConfigurationIndex() != null) {
+                    this.getConfigurationIndex().add(config);
+                }
+            } else {
+                // the fingerprint of an unmerged dictionary is cached with the resource
+                final long fingerprint = properties == this.getResource().getDictionary()
+                        ? ConfigFingerprint.get(this.getResource())
+                        : ConfigFingerprint.compute(properties);
+                if (ConfigFingerprint.SHARED.isSameData(config, fingerprint, properties)) {
+                    this.getLogger()
+                            .debug(
+                                    "Configuration {} already installed with same data, update request ignored: {}",
+                                    config.getPid(),
+                                    getResource());
+                    ConfigurationMetrics.SHARED.installSkipped();
+                    config = null;
+                } else if (debounce && this.schedule(properties)) {
+                    return OUTCOME_SCHEDULED;
+                } else if (!Activator.MINIMIZE_WRITES || !Objects.equals(location, config.getBundleLocation())) {
+                    config.setBundleLocation(location);
+                }
+            }
+
+            if (config != null) {
+                // merged properties are only copied for the update
+                config.update(
+                        properties instanceof LayeredDictionary
+                                ? ((LayeredDictionary) properties).flatten()
+                                : properties);
+                ConfigurationMetrics.SHARED.update();
+                ConfigurationMetrics.SHARED.installApplied();
+                outcome = created ? "created" : "updated";
+                if (ctx != null) {
+                    ctx.log("Installed configuration {} from resource {}", config.getPid(), getResource());
+                }
+                this.getLogger()
+                        .debug("Configuration " + config.getPid()
+                                + " " + (created ? "created" : "updated")
+                                + " from " + getResource());
+                final Operation op = new Coordinator.Operation(
+                        config.getPid(),
+                        config.getFactoryPid(),
+                        false,
+                        Activator.CHANGE_COUNT_SUPPRESSION ? config.getChangeCount() : -1);
+                Coordinator.SHARED.add(op);
+            }
+            return outcome;
+        } catch (final IllegalStateException e) {
+            if (this.getConfigurationIndex() != null) {
+                // the configuration has been deleted in the meantime
+                this.getConfigurationIndex().invalidate(this.factoryPid, this.configPid);
             }
+            throw e;
         }
     }
 }
@@ -30,7 +30,24 @@ public class ConfigRemoveTask extends AbstractConfigTask {
     private static final String CONFIG_REMOVE_ORDER = "10-";
 
     public ConfigRemoveTask(final TaskResourceGroup r, final ConfigurationAdmin configAdmin) {
-        super(r, configAdmin);
+        this(r, configAdmin, null);
+    }
+
+    /** Writer for debounced writes or null */
+    private final DebouncedWriter writer;
+
+    public ConfigRemoveTask(
+            final TaskResourceGroup r, final ConfigurationAdmin configAdmin, final ConfigurationIndex configIndex) {
+        this(r, configAdmin, configIndex, null);
+    }
+
+    public ConfigRemoveTask(
+            final TaskResourceGroup r,
+            final ConfigurationAdmin configAdmin,
+            final ConfigurationIndex configIndex,
+            final DebouncedWriter writer) {
+        super(r, configAdmin, configIndex);
+        this.writer = writer;
     }
 
     @Override
@@ -43,32 +60,56 @@ public class ConfigRemoveTask extends AbstractConfigTask {
      */
     @Override
     public void execute(final InstallationContext ctx) {
-        synchronized (Coordinator.SHARED) {
+        final long start = System.nanoTime();
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.REMOVE);
+        String outcome = "retry";
+        synchronized (this.getLock()) {
+            ConfigurationMetrics.SHARED.lockAcquired(start);
+            if (this.writer != null) {
+                // a pending write must not overtake the removal
+                this.writer.cancel(this.getRealPID());
+            }
             try {
-                Configuration cfg =
-                        ConfigUtil.getConfiguration(this.getConfigurationAdmin(), this.factoryPid, this.configPid);
+                Configuration cfg = this.getConfiguration();
                 if (cfg == null) {
                     this.getLogger()
                             .debug(
                                     "Cannot delete config , pid={} not found, ignored ({})",
                                     getRealPID(),
                                     getResource());
+                    outcome = "notFound";
                 } else {
-                    if (!ConfigUtil.isSameData(
-                            cfg.getProperties(), this.getResource().getDictionary())) {
+                    if (!ConfigFingerprint.SHARED.isSameData(
+                            cfg,
+                            ConfigFingerprint.get(this.getResource()),
+                            this.getResource().getDictionary())) {
                         this.getLogger().debug("Configuration has changed after it has been installed!");
+                        outcome = "changed";
                     } else {
-                        final Coordinator.Operation op =
-                                new Coordinator.Operation(cfg.getPid(), cfg.getFactoryPid(), true);
+                        final Coordinator.Operation op = new Coordinator.Operation(
+                                cfg.getPid(),
+                                cfg.getFactoryPid(),
+                                true,
+                                Activator.CHANGE_COUNT_SUPPRESSION ? cfg.getChangeCount() : -1);
 
                         this.getLogger().debug("Deleting config {} ({})", getRealPID(), getResource());
                         cfg.delete();
+                        ConfigurationMetrics.SHARED.delete();
+                        outcome = "deleted";
+                        ConfigFingerprint.SHARED.remove(op.pid);
+                        if (this.getConfigurationIndex() != null) {
+                            this.getConfigurationIndex().remove(op.pid);
+                        }
                         ctx.log("Deleted configuration {} from resource {}", getRealPID(), getResource());
 
                         Coordinator.SHARED.add(op);
                     }
                 }
             } catch (final Exception e) {
+                if (e instanceof IllegalStateException && this.getConfigurationIndex() != null) {
+                    // the configuration has been deleted in the meantime
+                    this.getConfigurationIndex().invalidate(this.factoryPid, this.configPid);
+                }
                 this.getLogger()
                         .debug(
                                 "Exception during removal of config " + this.getResource() + " : " + e.getMessage()
@@ -77,6 +118,8 @@ public class ConfigRemoveTask extends AbstractConfigTask {
             }
             // we always set to uninstalled as the resource really has been deleted
             this.setFinishedState(ResourceState.UNINSTALLED);
+            ConfigurationMetrics.SHARED.removeExecuted(start);
         }
+        InstallerEvents.end(event, this.getRealPID(), this.factoryPid, outcome);
     }
 }
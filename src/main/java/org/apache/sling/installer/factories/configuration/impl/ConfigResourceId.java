@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+/**
+ * The pids of a configuration resource, parsed from the url of the resource.
+ *
+ * The last segment of the url without a known extension is the pid. It is split into
+ * a factory pid and a name if it is a Felix style factory pid with a generated UUID, or
+ * contains a '~' or a '-'.
+ *
+ * The parser does a single pass over the url and only creates the resulting strings.
+ */
+final class ConfigResourceId {
+
+    /** Known configuration extensions */
+    private static final String[] EXTENSIONS = {".config", ".properties", ".cfg", ".cfg.json"};
+
+    private static final char NEXT_LINE = 0x85;
+
+    private static final char LINE_SEPARATOR = 0x2028;
+
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    /** Length of a UUID */
+    private static final int UUID_LENGTH = 36;
+
+    /** The factory pid or {@code null} */
+    final String factoryPid;
+
+    /** The pid or the name of a factory configuration */
+    final String configPid;
+
+    private ConfigResourceId(final String factoryPid, final String configPid) {
+        this.factoryPid = factoryPid;
+        this.configPid = configPid;
+    }
+
+    /**
+     * Get the id of the resource
+     * @return The pid of the configuration
+     */
+    String getId() {
+        return this.factoryPid == null
+                ? this.configPid
+                : ConfigUtil.getPIDOfFactoryPID(this.factoryPid, this.configPid);
+    }
+
+    /**
+     * Parse the url of a configuration resource
+     * @param url The url
+     * @return The parsed pids
+     */
+    static ConfigResourceId parse(final String url) {
+        // windows separators are treated the same as unix separators
+        int pos = Math.max(url.lastIndexOf('/'), url.lastIndexOf('\\'));
+        if (pos == -1) {
+            pos = url.indexOf(':');
+        }
+        final int start = pos + 1;
+        final int end = url.length() - getExtensionLength(url, start);
+
+        // Felix style factory configuration: factoryPid.uuid
+        final int uuidStart = end - UUID_LENGTH;
+        if (uuidStart - 1 >= start
+                && url.charAt(uuidStart - 1) == '.'
+                && isUUID(url, uuidStart)
+                && !containsLineTerminator(url, start, uuidStart - 1)) {
+            return new ConfigResourceId(url.substring(start, uuidStart - 1), url.substring(uuidStart, end));
+        }
+
+        int n = indexOf(url, '~', start, end);
+        if (n == -1) {
+            n = indexOf(url, '-', start, end);
+        }
+        if (n > start) {
+            return new ConfigResourceId(url.substring(start, n), url.substring(n + 1, end));
+        }
+        return new ConfigResourceId(null, url.substring(start, end));
+    }
+
+    /**
+     * Get the length of a known extension at the end of the url
+     */
+    private static int getExtensionLength(final String url, final int start) {
+        final int length = url.length();
+        for (final String ext : EXTENSIONS) {
+            final int extStart = length - ext.length();
+            if (extStart >= start && url.startsWith(ext, extStart)) {
+                return ext.length();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check for a UUID in lower case hex format (8-4-4-4-12) at the given position
+     */
+    private static boolean isUUID(final String value, final int offset) {
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            final char c = value.charAt(offset + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check for characters not matched by '.' in a regular expression
+     */
+    private static boolean containsLineTerminator(final String value, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == NEXT_LINE || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(final String value, final char c, final int start, final int end) {
+        final int index = value.indexOf(c, start);
+        return index < end ? index : -1;
+    }
+}
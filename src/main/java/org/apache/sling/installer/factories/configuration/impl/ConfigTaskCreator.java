@@ -18,15 +18,13 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.sling.installer.api.InstallableResource;
 import org.apache.sling.installer.api.ResourceChangeListener;
@@ -39,12 +37,14 @@ import org.apache.sling.installer.api.tasks.InstallTaskFactory;
 import org.apache.sling.installer.api.tasks.RegisteredResource;
 import org.apache.sling.installer.api.tasks.ResourceState;
 import org.apache.sling.installer.api.tasks.ResourceTransformer;
+import org.apache.sling.installer.api.tasks.RetryHandler;
 import org.apache.sling.installer.api.tasks.TaskResource;
 import org.apache.sling.installer.api.tasks.TaskResourceGroup;
 import org.apache.sling.installer.api.tasks.TransformationResult;
 import org.apache.sling.installer.factories.configuration.ConfigurationConstants;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
@@ -58,8 +58,11 @@ import org.slf4j.LoggerFactory;
  */
 public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListener, ResourceTransformer {
 
-    private static final Pattern FELIX_FACTORY_CONFIG_PATTERN =
-            Pattern.compile("(.*)\\.([0-9a-f]{8}-(?:[0-9a-f]{4}-){3}[0-9a-f]{12})");
+    /** Maximum number of configurations with pending events in the event queue. */
+    private static final int EVENT_QUEUE_CAPACITY = 10000;
+
+    /** Maximum time in milliseconds to wait for pending events on deactivation. */
+    private static final long EVENT_QUEUE_DRAIN_TIMEOUT = 5000;
 
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -73,6 +76,18 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
     /** Info Provider */
     private final InfoProvider infoProvider;
 
+    /** Configuration index or null if disabled */
+    private final ConfigurationIndex configIndex;
+
+    /** Batch for the tasks of the current installer cycle or null */
+    private ConfigurationBatch batch;
+
+    /** Queue for writing back configuration changes or null if disabled */
+    private final ConfigurationEventQueue eventQueue;
+
+    /** Writer for debounced configuration writes or null if disabled */
+    private final DebouncedWriter writer;
+
     public ConfigTaskCreator(
             final ResourceChangeListener listener,
             final ConfigurationAdmin configAdmin,
@@ -80,6 +95,39 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
         this.changeListener = listener;
         this.configAdmin = configAdmin;
         this.infoProvider = infoProvider;
+        this.configIndex = Activator.INDEX_CONFIGURATIONS ? new ConfigurationIndex(configAdmin) : null;
+        this.eventQueue = Activator.ASYNC_WRITE_BACK
+                ? new ConfigurationEventQueue(EVENT_QUEUE_CAPACITY, e -> this.processEvent(e, false))
+                : null;
+        // the installer runs the install tasks again once a scheduled write has been attempted
+        this.writer = Activator.WRITE_DEBOUNCE > 0
+                ? new DebouncedWriter(
+                        Activator.WRITE_DEBOUNCE,
+                        listener instanceof RetryHandler ? ((RetryHandler) listener)::scheduleRetry : null)
+                : null;
+    }
+
+    /**
+     * Activate this task creator
+     */
+    public void activate() {
+        if (this.eventQueue != null) {
+            this.eventQueue.start();
+        }
+    }
+
+    /**
+     * Deactivate this task creator
+     */
+    public void deactivate() {
+        if (this.writer != null) {
+            this.writer.stop();
+        }
+        if (this.eventQueue != null) {
+            this.eventQueue.stop(EVENT_QUEUE_DRAIN_TIMEOUT);
+        }
+        // deletions are not tracked anymore
+        ConfigFingerprint.SHARED.clear();
     }
 
     public ServiceRegistration<?> register(final BundleContext bundleContext) {
@@ -95,6 +143,14 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
             ResourceTransformer.class.getName()
         };
         final ServiceRegistration<?> reg = bundleContext.registerService(serviceInterfaces, this, props);
+        if (this.configIndex != null) {
+            // populate after registering as listener to not miss any changes
+            try {
+                this.configIndex.populate();
+            } catch (final IOException | InvalidSyntaxException e) {
+                this.logger.warn("Unable to populate configuration index, using configuration admin", e);
+            }
+        }
         this.logger.info(
                 "OSGi Configuration support for OSGi installer active, default location={}, merge schemes={}",
                 Activator.DEFAULT_LOCATION,
@@ -127,71 +183,237 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
                             || second.getDictionary().get(InstallableResource.RESOURCE_IS_TEMPLATE) == null)) {
                 result = new ChangeStateTask(group, ResourceState.UNINSTALLED);
             } else {
-                result = new ConfigRemoveTask(group, this.configAdmin);
+                result = new ConfigRemoveTask(group, this.configAdmin, this.getIndex(toActivate), this.writer);
             }
         } else {
-            result = new ConfigInstallTask(group, this.configAdmin);
+            result = new ConfigInstallTask(group, this.configAdmin, this.getIndex(toActivate), this.writer);
         }
         return result;
     }
 
+    /**
+     * Get the index to be used by a task.
+     * If batched lookups are enabled, all tasks created for an installer cycle share
+     * a batch which fetches their configurations with a single listing once the
+     * first task is executed.
+     * @param resource The resource of the task
+     * @return The index or {@code null}
+     */
+    private ConfigurationIndex getIndex(final TaskResource resource) {
+        if (this.configIndex != null || !Activator.BATCH_LOOKUPS) {
+            return this.configIndex;
+        }
+        final String factoryPid = (String) resource.getAttribute(ConfigurationAdmin.SERVICE_FACTORYPID);
+        final String pid = (String) resource.getAttribute(Constants.SERVICE_PID);
+        synchronized (this) {
+            if (this.batch == null || !this.batch.add(factoryPid, pid)) {
+                this.batch = new ConfigurationBatch(this.configAdmin);
+                this.batch.add(factoryPid, pid);
+            }
+            return this.batch;
+        }
+    }
+
     /**
      * @see org.osgi.service.cm.ConfigurationListener#configurationEvent(org.osgi.service.cm.ConfigurationEvent)
      */
     @Override
     public void configurationEvent(final ConfigurationEvent event) {
-        synchronized (Coordinator.SHARED) {
-            if (event.getType() == ConfigurationEvent.CM_DELETED) {
-                final Coordinator.Operation op = Coordinator.SHARED.get(event.getPid(), event.getFactoryPid(), true);
+        if (event.getType() == ConfigurationEvent.CM_DELETED) {
+            ConfigFingerprint.SHARED.remove(event.getPid());
+        }
+        if (Activator.EXCLUDED_PIDS != null && Activator.EXCLUDED_PIDS.matches(event.getPid())) {
+            // excluded configurations are not written back, but the index is kept up to date
+            if (event.getType() == ConfigurationEvent.CM_DELETED && this.configIndex != null) {
+                this.configIndex.remove(event.getPid());
+            }
+            this.logger.debug("Ignoring configuration event for excluded {}", event.getPid());
+            return;
+        }
+        if (this.eventQueue != null) {
+            if (event.getType() == ConfigurationEvent.CM_DELETED || event.getType() == ConfigurationEvent.CM_UPDATED) {
+                // check for our own changes right away, the write back happens in the background
+                // updates are checked against their change count once the configuration is read
+                if (event.getType() == ConfigurationEvent.CM_DELETED || !Activator.CHANGE_COUNT_SUPPRESSION) {
+                    synchronized (Coordinator.SHARED.getLock(event.getPid(), event.getFactoryPid())) {
+                        if (event.getType() == ConfigurationEvent.CM_DELETED && this.configIndex != null) {
+                            this.configIndex.remove(event.getPid());
+                        }
+                        final Coordinator.Operation op = getOperation(event, null);
+                        if (op != null) {
+                            // a pending event happened before this change and would read the state written
+                            // by the installer
+                            if (this.eventQueue.remove(event.getPid())) {
+                                this.logger.debug("Discarding pending configuration event for {}", event.getPid());
+                            }
+                            this.logger.debug(
+                                    "Ignoring configuration event for {}:{}", event.getPid(), event.getFactoryPid());
+                            return;
+                        }
+                    }
+                }
+                if (!this.eventQueue.offer(event)) {
+                    this.processEvent(event, false);
+                }
+            }
+        } else {
+            this.processEvent(event, true);
+        }
+    }
+
+    /**
+     * Get the operation of the installer which caused the event
+     * @param event The event
+     * @param config The configuration for an update event or {@code null}
+     * @return The operation or {@code null} if the event has not been caused by the installer
+     */
+    private static Coordinator.Operation getOperation(final ConfigurationEvent event, final Configuration config) {
+        final boolean isDelete = event.getType() == ConfigurationEvent.CM_DELETED;
+        if (Activator.CHANGE_COUNT_SUPPRESSION) {
+            return Coordinator.SHARED.get(
+                    event.getPid(), event.getFactoryPid(), isDelete, config == null ? -1 : config.getChangeCount());
+        }
+        return Coordinator.SHARED.get(event.getPid(), event.getFactoryPid(), isDelete);
+    }
+
+    /**
+     * Process a configuration event and write back changes not done by the installer
+     * @param event The event
+     * @param checkCoordinator Whether the event needs to be checked against the {@link Coordinator},
+     *        updates are always checked if own changes are recognized by their change count.
+     *        If {@code false}, the event has been checked on arrival and the installer might have
+     *        changed the configuration since then, such an event is ignored.
+     */
+    private void processEvent(final ConfigurationEvent event, final boolean checkCoordinator) {
+        final long start = System.nanoTime();
+        final Object jfrEvent = InstallerEvents.begin(InstallerEvents.Type.CONFIGURATION_EVENT);
+        String outcome = "ignored";
+        synchronized (Coordinator.SHARED.getLock(event.getPid(), event.getFactoryPid())) {
+            ConfigurationMetrics.SHARED.lockAcquired(start);
+            if (isOutdated(event, checkCoordinator)) {
+                this.logger.debug(
+                        "Ignoring outdated configuration event for {}:{}", event.getPid(), event.getFactoryPid());
+            } else if (event.getType() == ConfigurationEvent.CM_DELETED) {
+                if (this.configIndex != null) {
+                    this.configIndex.remove(event.getPid());
+                }
+                final Coordinator.Operation op = checkCoordinator ? getOperation(event, null) : null;
                 if (op == null) {
                     this.changeListener.resourceRemoved(InstallableResource.TYPE_CONFIG, event.getPid());
+                    ConfigurationMetrics.SHARED.writeBack();
+                    outcome = "removed";
                 } else {
                     this.logger.debug("Ignoring configuration event for {}:{}", event.getPid(), event.getFactoryPid());
                 }
             } else if (event.getType() == ConfigurationEvent.CM_UPDATED) {
-                try {
-                    // we just need to pass in the pid as we're using named factory configs
-                    final Configuration config = ConfigUtil.getConfiguration(configAdmin, null, event.getPid());
-                    final Coordinator.Operation op =
-                            Coordinator.SHARED.get(event.getPid(), event.getFactoryPid(), false);
-                    if (config != null && op == null) {
-                        final boolean persist = ConfigUtil.toBoolean(
-                                config.getProperties().get(ConfigurationConstants.PROPERTY_PERSISTENCE), true);
-
-                        final Dictionary<String, Object> dict = ConfigUtil.cleanConfiguration(config.getProperties());
-                        final Map<String, Object> attrs = new HashMap<>();
-                        if (!persist) {
-                            attrs.put(ResourceChangeListener.RESOURCE_PERSIST, Boolean.FALSE);
-                        }
-                        attrs.put(Constants.SERVICE_PID, event.getPid());
-                        attrs.put(InstallableResource.RESOURCE_URI_HINT, event.getPid());
-                        if (config.getBundleLocation() != null) {
-                            attrs.put(InstallableResource.INSTALLATION_HINT, config.getBundleLocation());
-                        }
-                        // Factory?
-                        if (event.getFactoryPid() != null) {
-                            attrs.put(ConfigurationAdmin.SERVICE_FACTORYPID, event.getFactoryPid());
-                        }
+                // reject own changes before reading the configuration, unless they
+                // are recognized by the change count of the configuration
+                if (checkCoordinator && !Activator.CHANGE_COUNT_SUPPRESSION && getOperation(event, null) != null) {
+                    this.logger.debug("Ignoring configuration event for {}:{}", event.getPid(), event.getFactoryPid());
+                } else {
+                    outcome = this.writeBack(event);
+                }
+            }
+        }
+        InstallerEvents.end(jfrEvent, event.getPid(), event.getFactoryPid(), outcome);
+    }
 
-                        removeDefaultProperties(this.infoProvider, event.getPid(), dict);
-                        this.changeListener.resourceAddedOrUpdated(
-                                InstallableResource.TYPE_CONFIG, event.getPid(), null, dict, attrs);
+    /**
+     * Check whether an event checked on arrival has been superseded by a change of the installer.
+     * A deleted configuration might have been installed again, an updated configuration might
+     * have been written by the installer without its event being received yet. Own changes
+     * recognized by their change count are detected when the configuration is read.
+     * @param event The event
+     * @param checkCoordinator Whether the event is checked against the {@link Coordinator} anyway
+     * @return {@code true} if the event must be ignored
+     */
+    private boolean isOutdated(final ConfigurationEvent event, final boolean checkCoordinator) {
+        if (checkCoordinator) {
+            return false;
+        }
+        if (event.getType() == ConfigurationEvent.CM_DELETED) {
+            try {
+                return this.getConfiguration(event.getPid()) != null;
+            } catch (final IOException | InvalidSyntaxException e) {
+                return false;
+            }
+        }
+        return !Activator.CHANGE_COUNT_SUPPRESSION
+                && Coordinator.SHARED.isPending(event.getPid(), event.getFactoryPid());
+    }
 
-                    } else {
-                        this.logger.debug(
-                                "Ignoring configuration event for {}:{}", event.getPid(), event.getFactoryPid());
-                    }
-                } catch (final Exception ignore) {
-                    // ignore for now
-                }
+    /**
+     * Read an updated configuration and write it back to the installer
+     * @param event The update event
+     * @return The outcome
+     */
+    private String writeBack(final ConfigurationEvent event) {
+        try {
+            // we just need to pass in the pid as we're using named factory configs
+            final Configuration config = this.getConfiguration(event.getPid());
+            if (config == null || (Activator.CHANGE_COUNT_SUPPRESSION && getOperation(event, config) != null)) {
+                this.logger.debug("Ignoring configuration event for {}:{}", event.getPid(), event.getFactoryPid());
+                return "ignored";
+            }
+            final Dictionary<String, Object> properties = config.getProperties();
+            final boolean persist =
+                    ConfigUtil.toBoolean(properties.get(ConfigurationConstants.PROPERTY_PERSISTENCE), true);
+
+            // copy the properties for the installer, without the ignored and the default properties
+            final Dictionary<String, Object> defaultProps = getDefaultProperties(this.infoProvider, event.getPid());
+            final Dictionary<String, Object> dict = CompactDictionary.copyOf(
+                    defaultProps == null
+                            ? ConfigUtil.filterConfiguration(properties)
+                            : ConfigUtil.filterConfiguration(properties, defaultProps));
+            final Map<String, Object> attrs = new HashMap<>();
+            if (!persist) {
+                attrs.put(ResourceChangeListener.RESOURCE_PERSIST, Boolean.FALSE);
+            }
+            attrs.put(Constants.SERVICE_PID, event.getPid());
+            attrs.put(InstallableResource.RESOURCE_URI_HINT, event.getPid());
+            final String location = config.getBundleLocation();
+            if (location != null) {
+                attrs.put(InstallableResource.INSTALLATION_HINT, location);
             }
+            // Factory?
+            if (event.getFactoryPid() != null) {
+                attrs.put(ConfigurationAdmin.SERVICE_FACTORYPID, event.getFactoryPid());
+            }
+
+            this.changeListener.resourceAddedOrUpdated(
+                    InstallableResource.TYPE_CONFIG, event.getPid(), null, dict, attrs);
+            ConfigurationMetrics.SHARED.writeBack();
+            return "updated";
+        } catch (final Exception ignore) {
+            // ignore for now
+            return "failed";
         }
     }
 
+    /**
+     * Get the configuration for the pid, using the index if enabled.
+     * Configurations not known to the index are looked up and added to it.
+     * @param pid The pid
+     * @return The configuration or {@code null}
+     */
+    private Configuration getConfiguration(final String pid) throws IOException, InvalidSyntaxException {
+        return ConfigUtil.getConfiguration(this.configAdmin, this.configIndex, null, pid);
+    }
+
+    /**
+     * Get the merged properties of all resources for the pid using one of the merge schemes.
+     * The returned dictionary might be shared and must not be modified.
+     * @param infoProvider The info provider
+     * @param pid The pid
+     * @return The merged properties or {@code null}
+     */
     public static Dictionary<String, Object> getDefaultProperties(final InfoProvider infoProvider, final String pid) {
         if (Activator.MERGE_SCHEMES != null) {
-            final List<Dictionary<String, Object>> propertiesList = new ArrayList<>();
             final String entityId = InstallableResource.TYPE_CONFIG.concat(":").concat(pid);
+            if (DefaultPropertiesIndex.SHARED.isActive(infoProvider)) {
+                return DefaultPropertiesIndex.SHARED.get(entityId);
+            }
+            final List<Dictionary<String, Object>> propertiesList = new ArrayList<>();
             boolean done = false;
             for (final ResourceGroup group : infoProvider.getInstallationState().getInstalledResources()) {
                 for (final Resource rsrc : group.getResources()) {
@@ -207,23 +429,12 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
                 }
             }
             if (!propertiesList.isEmpty()) {
-                final Dictionary<String, Object> defaultProps = ConfigUtil.mergeReverseOrder(propertiesList);
-                return defaultProps;
+                return LayeredDictionary.of(propertiesList);
             }
         }
         return null;
     }
 
-    public static void removeDefaultProperties(
-            final InfoProvider infoProvider, final String pid, final Dictionary<String, Object> dict) {
-        if (Activator.MERGE_SCHEMES != null) {
-            final Dictionary<String, Object> defaultProps = getDefaultProperties(infoProvider, pid);
-            if (defaultProps != null) {
-                ConfigUtil.removeRedundantProperties(dict, defaultProps);
-            }
-        }
-    }
-
     /**
      * @see org.apache.sling.installer.api.tasks.ResourceTransformer#transform(org.apache.sling.installer.api.tasks.RegisteredResource)
      */
@@ -235,99 +446,25 @@ public class ConfigTaskCreator implements InstallTaskFactory, ConfigurationListe
         return null;
     }
 
-    private static String getResourceId(final String rawUrl) {
-        final String url = separatorsToUnix(rawUrl);
-        int pos = url.lastIndexOf('/');
-        if (pos == -1) {
-            pos = url.indexOf(':');
-        }
-
-        final String lastIdPart;
-        if (pos != -1) {
-            lastIdPart = url.substring(pos + 1);
-        } else {
-            lastIdPart = url;
-        }
-        return lastIdPart;
-    }
-
     /**
      * Check if the registered resource is a configuration
      * @param resource The resource
      */
     private TransformationResult[] checkConfiguration(final RegisteredResource resource) {
-        final String lastIdPart = getResourceId(resource.getURL());
-
-        // remove extension if known
-        final String pid = removeConfigExtension(lastIdPart);
-
-        // split pid and factory pid alias
-        final Map<String, Object> attr = new HashMap<>();
-        final String factoryPid;
-        final String configPid;
+        final ConfigResourceId pids = ConfigResourceId.parse(resource.getURL());
 
-        final String[] pids = parseAsFelixFactoryConfigurationPid(pid);
-        if (pids != null && pids.length == 2) {
-            factoryPid = pids[0];
-            configPid = pids[1];
-        } else {
-            int n = pid.indexOf('~');
-            if (n == -1) {
-                n = pid.indexOf('-');
-            }
-            if (n > 0) {
-                configPid = pid.substring(n + 1);
-                factoryPid = pid.substring(0, n);
-            } else {
-                factoryPid = null;
-                configPid = pid;
-            }
-        }
-
-        if (factoryPid != null) {
-            attr.put(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid);
+        final Map<String, Object> attr = new HashMap<>(4);
+        if (pids.factoryPid != null) {
+            attr.put(ConfigurationAdmin.SERVICE_FACTORYPID, pids.factoryPid);
         }
         // configPid is the "name" in case a factoryPid is present
-        attr.put(Constants.SERVICE_PID, configPid);
+        attr.put(Constants.SERVICE_PID, pids.configPid);
 
         final TransformationResult tr = new TransformationResult();
-        final String id = (factoryPid == null ? configPid : ConfigUtil.getPIDOfFactoryPID(factoryPid, configPid));
-        tr.setId(id);
+        tr.setId(pids.getId());
         tr.setResourceType(InstallableResource.TYPE_CONFIG);
         tr.setAttributes(attr);
 
         return new TransformationResult[] {tr};
     }
-
-    private static String[] parseAsFelixFactoryConfigurationPid(String pid) {
-        Matcher matcher = FELIX_FACTORY_CONFIG_PATTERN.matcher(pid);
-        if (matcher.matches()) {
-            return new String[] {matcher.group(1), matcher.group(2)};
-        }
-        return null;
-    }
-
-    private static final List<String> EXTENSIONS = Arrays.asList(".config", ".properties", ".cfg", ".cfg.json");
-
-    private static String removeConfigExtension(final String id) {
-        for (final String ext : EXTENSIONS) {
-            if (id.endsWith(ext)) {
-                return id.substring(0, id.length() - ext.length());
-            }
-        }
-        return id;
-    }
-
-    /**
-     * Converts all separators to the Unix separator of forward slash.
-     *
-     * @param path  the path to be changed, null ignored
-     * @return the updated path
-     */
-    private static String separatorsToUnix(final String path) {
-        if (path == null || path.indexOf('\\') == -1) {
-            return path;
-        }
-        return path.replace('\\', '/');
-    }
 }
@@ -19,9 +19,18 @@
 package org.apache.sling.installer.factories.configuration.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.apache.sling.installer.api.InstallableResource;
 import org.apache.sling.installer.api.tasks.ResourceUpdater;
@@ -40,6 +49,50 @@ import org.slf4j.LoggerFactory;
  */
 public class ConfigUpdateHandler implements ResourceUpdater {
 
+    /**
+     * A prepared migration of a group. The configuration admin operations
+     * might run on any thread, the group itself is only changed by
+     * {@link #complete()} on the calling thread.
+     */
+    private static final class Migration {
+        final UpdatableResourceGroup group;
+        final String factoryPid;
+        final Consumer<ConfigurationIndex> operation;
+        /** The new id of the group or {@code null} if the group is not changed */
+        final String newId;
+
+        volatile boolean done;
+
+        Migration(
+                final UpdatableResourceGroup group,
+                final String factoryPid,
+                final Consumer<ConfigurationIndex> operation,
+                final String newId) {
+            this.group = group;
+            this.factoryPid = factoryPid;
+            this.operation = operation;
+            this.newId = newId;
+        }
+
+        void run(final ConfigurationIndex index) {
+            this.operation.accept(index);
+            this.done = true;
+        }
+
+        /**
+         * Change the id of the group, unless the operation has failed or has not been run.
+         * A group which is not changed keeps its old id and alias.
+         */
+        void complete() {
+            if (this.newId != null && this.done) {
+                this.group.setId(this.newId);
+                // clear alias
+                this.group.setAlias(null);
+                this.group.update();
+            }
+        }
+    }
+
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -64,13 +117,109 @@ public class ConfigUpdateHandler implements ResourceUpdater {
 
     @Override
     public void update(final Collection<UpdatableResourceGroup> groups) {
+        final int threads = Activator.MIGRATION_THREADS;
+        final List<Migration> migrations = new ArrayList<>();
+        ConfigurationIndex index = null;
+        boolean indexCreated = false;
         for (final UpdatableResourceGroup group : groups) {
-            update(group);
+            final Migration migration = this.prepare(group);
+            if (migration != null) {
+                if (!indexCreated) {
+                    // only list the configurations if at least one group needs a migration
+                    index = this.createIndex();
+                    indexCreated = true;
+                }
+                if (threads > 1) {
+                    migrations.add(migration);
+                } else {
+                    migration.run(index);
+                    migration.complete();
+                }
+            }
+        }
+        if (!migrations.isEmpty()) {
+            this.runParallel(migrations, threads, index);
+            for (final Migration migration : migrations) {
+                migration.complete();
+            }
         }
         this.activator.finishedUpdating();
     }
 
-    private void update(final UpdatableResourceGroup group) {
+    /**
+     * Run the configuration admin operations of the migrations in parallel.
+     * Migrations for the same factory pid are run in order on the same thread.
+     * @param migrations The migrations
+     * @param threads The maximum number of threads
+     * @param index The configuration index or {@code null}
+     */
+    private void runParallel(final List<Migration> migrations, final int threads, final ConfigurationIndex index) {
+        final Map<String, List<Migration>> byFactoryPid = new LinkedHashMap<>();
+        for (final Migration migration : migrations) {
+            byFactoryPid
+                    .computeIfAbsent(migration.factoryPid, key -> new ArrayList<>())
+                    .add(migration);
+        }
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(threads, byFactoryPid.size()), runnable -> {
+                    final Thread thread = new Thread(runnable, "Apache Sling Configuration Installer Migration");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final List<Migration> list : byFactoryPid.values()) {
+                futures.add(executor.submit(() -> {
+                    for (final Migration migration : list) {
+                        try {
+                            migration.run(index);
+                        } catch (final RuntimeException e) {
+                            // the remaining migrations for the factory pid are skipped
+                            this.logger.warn("Unable to migrate factory configurations of " + migration.factoryPid, e);
+                            break;
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    this.logger.warn("Unable to migrate factory configurations", e.getCause());
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create an index of all configurations, so that all migrations are resolved
+     * against a single listing instead of querying the configuration admin
+     * for each group.
+     * @return The index or {@code null} if the index can't be created
+     */
+    private ConfigurationIndex createIndex() {
+        if (this.activator.isActive()) {
+            final ConfigurationIndex index = new ConfigurationIndex(this.configAdmin);
+            try {
+                index.populate();
+                return index;
+            } catch (final IOException | InvalidSyntaxException e) {
+                this.logger.debug("Unable to create configuration index, querying each configuration", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prepare the migration of a group
+     * @param group The group
+     * @return The migration or {@code null} if the group does not need to be migrated
+     */
+    private Migration prepare(final UpdatableResourceGroup group) {
         if (this.activator.isActive()) {
             // check if the group handles configurations and has an alias (aka factory config)
             if (InstallableResource.TYPE_CONFIG.equals(group.getResourceType())) {
@@ -78,18 +227,27 @@ public class ConfigUpdateHandler implements ResourceUpdater {
                         && group.getId().contains("~")
                         && group.getId().contains("-")) {
                     // new format config with ~ as separator, cleanup if duplicate old format config exists
-                    this.cleanupDuplicateFactoryConfig(group);
+                    final String newPid = group.getId();
+                    final int indexOfSeparator = newPid.lastIndexOf('~');
+                    final String pid = newPid.substring(indexOfSeparator + 1);
+                    final String factoryPid = newPid.substring(0, indexOfSeparator);
+                    return new Migration(
+                            group,
+                            factoryPid,
+                            index -> this.cleanupDuplicateFactoryConfig(factoryPid, pid, index),
+                            null);
                 } else {
                     if (group.getAlias() != null || group.getId().contains("-")) {
                         this.logger.debug(
                                 "Configuration going under updation is : {} with alias : {}",
                                 group.getId(),
                                 group.getAlias());
-                        this.updateFactoryConfig(group);
+                        return this.prepareFactoryConfigUpdate(group);
                     }
                 }
             }
         }
+        return null;
     }
 
     protected String[] getFactoryPidAndPid(final String alias, final String oldId) {
@@ -152,7 +310,7 @@ public class ConfigUpdateHandler implements ResourceUpdater {
         return dotIndexArray[dotCount / 2]; // get the middle dot index
     }
 
-    private void updateFactoryConfig(final UpdatableResourceGroup group) {
+    private Migration prepareFactoryConfigUpdate(final UpdatableResourceGroup group) {
         final String alias = group.getAlias();
         final String oldId = group.getId();
 
@@ -163,41 +321,70 @@ public class ConfigUpdateHandler implements ResourceUpdater {
         final String pid = result[1];
 
         final String newId = ConfigUtil.getPIDOfFactoryPID(factoryPid, pid);
-        group.setId(newId);
-        // clear alias
-        group.setAlias(null);
 
         this.logger.debug("Updating factory configuration from {} to {}", oldId, newId);
+        return new Migration(
+                group, factoryPid, index -> this.updateFactoryConfig(factoryPid, alias, pid, index), newId);
+    }
+
+    /**
+     * Get an old style factory configuration. The index has been populated for this
+     * update with all configurations, therefore a configuration missing in the index
+     * does not exist and is not looked up again.
+     */
+    private Configuration getLegacyFactoryConfig(
+            final String factoryPid, final String alias, final String pid, final ConfigurationIndex index)
+            throws IOException, InvalidSyntaxException {
+        if (index != null) {
+            final String configPid = (alias != null ? alias.substring(factoryPid.length() + 1) : pid);
+            return index.getLegacyFactoryConfiguration(factoryPid, configPid);
+        }
+        return ConfigUtil.getLegacyFactoryConfig(this.configAdmin, factoryPid, alias, pid);
+    }
+
+    private void updateFactoryConfig(
+            final String factoryPid, final String alias, final String pid, final ConfigurationIndex index) {
         try {
-            final Configuration cfg = ConfigUtil.getLegacyFactoryConfig(this.configAdmin, factoryPid, alias, pid);
+            final Configuration cfg = this.getLegacyFactoryConfig(factoryPid, alias, pid, index);
             if (cfg != null) {
                 // keep existing values / location
                 final String location = cfg.getBundleLocation();
-                final Dictionary<String, Object> dict = ConfigUtil.cleanConfiguration(cfg.getProperties());
+                // the properties are a private copy and stay valid after the delete
+                final Dictionary<String, Object> dict = ConfigUtil.filterConfiguration(cfg.getProperties());
                 // delete old factory configuration
+                final String oldPid = cfg.getPid();
                 cfg.delete();
+                ConfigurationMetrics.SHARED.delete();
+                if (index != null) {
+                    index.remove(oldPid);
+                }
                 // create new named factory configuration with same properties and bundle location
                 final Configuration upCfg = this.configAdmin.getFactoryConfiguration(factoryPid, pid, location);
                 upCfg.update(dict);
+                ConfigurationMetrics.SHARED.update();
+                if (index != null) {
+                    index.add(upCfg);
+                }
             }
         } catch (final IOException | InvalidSyntaxException io) {
             // ignore for now
         }
-        group.update();
     }
 
-    private void cleanupDuplicateFactoryConfig(final UpdatableResourceGroup group) {
-        final String newPid = group.getId();
-        final int indexOfSeparator = newPid.lastIndexOf('~');
-        final String pid = newPid.substring(indexOfSeparator + 1);
-        final String factoryPid = newPid.substring(0, indexOfSeparator);
+    private void cleanupDuplicateFactoryConfig(
+            final String factoryPid, final String pid, final ConfigurationIndex index) {
         try {
-            final Configuration cfg = ConfigUtil.getLegacyFactoryConfig(this.configAdmin, factoryPid, null, pid);
+            final Configuration cfg = this.getLegacyFactoryConfig(factoryPid, null, pid, index);
             if (cfg != null) {
                 this.logger.debug(
                         "Duplicate configuration being cleaned up is : {}", cfg.getFactoryPid() + '.' + cfg.getPid());
                 // delete old factory configuration
+                final String oldPid = cfg.getPid();
                 cfg.delete();
+                ConfigurationMetrics.SHARED.delete();
+                if (index != null) {
+                    index.remove(oldPid);
+                }
             }
 
         } catch (final IOException | InvalidSyntaxException io) {
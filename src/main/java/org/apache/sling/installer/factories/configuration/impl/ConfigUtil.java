@@ -20,13 +20,14 @@ package org.apache.sling.installer.factories.configuration.impl;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.function.BiPredicate;
 
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
@@ -53,10 +54,10 @@ abstract class ConfigUtil {
      * This property has been used in older versions to keep track of factory
      * configurations.
      */
-    private static final String ALIAS_KEY = "org.apache.sling.installer.osgi.factoryaliaspid";
+    static final String ALIAS_KEY = "org.apache.sling.installer.osgi.factoryaliaspid";
 
     /** Configuration properties to ignore when comparing configs */
-    private static final Set<String> IGNORED_PROPERTIES = new HashSet<>();
+    static final Set<String> IGNORED_PROPERTIES = new HashSet<>();
 
     static {
         IGNORED_PROPERTIES.add(Constants.SERVICE_PID);
@@ -65,118 +66,380 @@ abstract class ConfigUtil {
         IGNORED_PROPERTIES.add(ConfigurationAdmin.SERVICE_FACTORYPID);
     }
 
-    private static Set<String> collectKeys(final Dictionary<String, Object> a) {
-        final Set<String> keys = new HashSet<>();
+    /** True if a and b represent the same config data, ignoring "non-configuration" keys in the dictionaries */
+    public static boolean isSameData(Dictionary<String, Object> a, Dictionary<String, Object> b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        int count = 0;
         final Enumeration<String> aI = a.keys();
         while (aI.hasMoreElements()) {
             final String key = aI.nextElement();
             if (!IGNORED_PROPERTIES.contains(key)) {
-                keys.add(key);
+                // dictionaries do not support null values, so a missing key results in null
+                final Object valB = b.get(key);
+                if (valB == null || !isSameValue(a.get(key), valB)) {
+                    return false;
+                }
+                count++;
+            }
+        }
+        final Enumeration<String> bI = b.keys();
+        while (bI.hasMoreElements()) {
+            if (!IGNORED_PROPERTIES.contains(bI.nextElement())) {
+                count--;
             }
         }
-        return keys;
+        return count == 0;
     }
 
     /**
-     * Convert the object to an array
-     * @param value The array
-     * @return an object array
+     * Compare two property values.
+     * Values are considered the same if their string representations are the same.
+     * Arrays are the same, if they have the same length and all elements are the same.
+     * An array and a single value are never the same.
+     * @param valA First value
+     * @param valB Second value
+     * @return {@code true} if the values are the same
      */
-    private static Object[] convertToObjectArray(final Object value) {
-        final Object[] values = new Object[Array.getLength(value)];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = Array.get(value, i);
+    public static boolean isSameValue(final Object valA, final Object valB) {
+        if (valA == valB) {
+            return true;
         }
-        return values;
+        if (valA == null || valB == null) {
+            return false;
+        }
+        final boolean arrayA = valA.getClass().isArray();
+        final boolean arrayB = valB.getClass().isArray();
+        if (arrayA && arrayB) {
+            return isSameArray(valA, valB);
+        }
+        if (arrayA || arrayB) {
+            // one value is array the other is not!
+            return false;
+        }
+        if (valA instanceof Collection && valB instanceof Collection) {
+            return isSameCollection((Collection<?>) valA, (Collection<?>) valB);
+        }
+        return isSameScalar(valA, valB);
     }
 
-    /** True if a and b represent the same config data, ignoring "non-configuration" keys in the dictionaries */
-    public static boolean isSameData(Dictionary<String, Object> a, Dictionary<String, Object> b) {
-        boolean result = false;
-        if (a != null && b != null) {
-            final Set<String> keysA = collectKeys(a);
-            final Set<String> keysB = collectKeys(b);
-            if (keysA.size() == keysB.size() && keysA.containsAll(keysB)) {
-                result = true;
-                for (final String key : keysA) {
-                    final Object valA = a.get(key);
-                    final Object valB = b.get(key);
-
-                    if (!isSameValue(valA, valB)) {
-                        result = false;
-                        break;
-                    }
+    /**
+     * Compare two collections element by element
+     */
+    private static boolean isSameCollection(final Collection<?> a, final Collection<?> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        final Iterator<?> iterA = a.iterator();
+        final Iterator<?> iterB = b.iterator();
+        while (iterA.hasNext()) {
+            final Object elemA = iterA.next();
+            final Object elemB = iterB.next();
+            if (elemA == null || elemB == null) {
+                if (elemA != elemB && !String.valueOf(elemA).equals(String.valueOf(elemB))) {
+                    return false;
                 }
+            } else if (!isSameScalar(elemA, elemB)) {
+                return false;
             }
         }
-        return result;
+        return true;
     }
 
-    public static boolean isSameValue(final Object valA, final Object valB) {
-        if (valA == null && valB == null) {
-            return true;
+    /**
+     * Compare two arrays element by element, primitive arrays are compared without boxing
+     */
+    private static boolean isSameArray(final Object a, final Object b) {
+        final Class<?> typeA = a.getClass();
+        if (typeA == b.getClass()) {
+            if (a instanceof String[]) {
+                return isSameStringArray((String[]) a, (String[]) b);
+            } else if (a instanceof long[]) {
+                return Arrays.equals((long[]) a, (long[]) b);
+            } else if (a instanceof int[]) {
+                return Arrays.equals((int[]) a, (int[]) b);
+            } else if (a instanceof boolean[]) {
+                return Arrays.equals((boolean[]) a, (boolean[]) b);
+            } else if (a instanceof double[]) {
+                return Arrays.equals((double[]) a, (double[]) b);
+            } else if (a instanceof float[]) {
+                return Arrays.equals((float[]) a, (float[]) b);
+            } else if (a instanceof short[]) {
+                return Arrays.equals((short[]) a, (short[]) b);
+            } else if (a instanceof byte[]) {
+                return Arrays.equals((byte[]) a, (byte[]) b);
+            } else if (a instanceof char[]) {
+                return Arrays.equals((char[]) a, (char[]) b);
+            }
         }
-        if (valA == null || valB == null) {
+        final int length = Array.getLength(a);
+        if (length != Array.getLength(b)) {
             return false;
         }
-        if (valA.getClass().isArray() && valB.getClass().isArray()) {
-            final Object[] arrA = convertToObjectArray(valA);
-            final Object[] arrB = convertToObjectArray(valB);
-
-            if (arrA.length != arrB.length) {
-                return false;
-            }
-            for (int i = 0; i < arrA.length; i++) {
-                if (!(String.valueOf(arrA[i]).equals(String.valueOf(arrB[i])))) {
-                    return false;
+        final boolean integralA = isIntegralArray(a);
+        final boolean integralB = isIntegralArray(b);
+        for (int i = 0; i < length; i++) {
+            final boolean same;
+            if ((integralA && isNullElement(a, i)) || (integralB && isNullElement(b, i))) {
+                // two nulls are the same, a null and a value are compared as strings
+                same = String.valueOf(Array.get(a, i)).equals(String.valueOf(Array.get(b, i)));
+            } else if (integralA && integralB) {
+                same = getLong(a, i) == getLong(b, i);
+            } else if (integralA && b instanceof String[]) {
+                same = isSameLong(getLong(a, i), ((String[]) b)[i]);
+            } else if (integralB && a instanceof String[]) {
+                same = isSameLong(getLong(b, i), ((String[]) a)[i]);
+            } else {
+                final Object elemA = Array.get(a, i);
+                final Object elemB = Array.get(b, i);
+                if (elemA == null || elemB == null) {
+                    same = String.valueOf(elemA).equals(String.valueOf(elemB));
+                } else {
+                    same = isSameScalar(elemA, elemB);
                 }
             }
-        } else if (!valA.getClass().isArray() && !valB.getClass().isArray()) {
-            // if no arrays do a string comparison
-            if (!(String.valueOf(valA).equals(String.valueOf(valB)))) {
+            if (!same) {
                 return false;
             }
-        } else {
-            // one value is array the other is not!
+        }
+        return true;
+    }
+
+    /**
+     * Compare two string arrays, a {@code null} element is the same as the string "null"
+     */
+    private static boolean isSameStringArray(final String[] a, final String[] b) {
+        if (a.length != b.length) {
             return false;
         }
+        for (int i = 0; i < a.length; i++) {
+            if (!String.valueOf(a[i]).equals(String.valueOf(b[i]))) {
+                return false;
+            }
+        }
         return true;
     }
 
     /**
-     * Remove all ignored properties
+     * Compare two non null, non array values by their string representation,
+     * avoiding the creation of strings for the common types.
      */
-    public static Dictionary<String, Object> cleanConfiguration(final Dictionary<String, Object> config) {
-        final Dictionary<String, Object> cleanedConfig = new Hashtable<>();
-        final Enumeration<String> e = config.keys();
-        while (e.hasMoreElements()) {
-            final String key = e.nextElement();
-            if (!IGNORED_PROPERTIES.contains(key)) {
-                cleanedConfig.put(key, config.get(key));
+    private static boolean isSameScalar(final Object a, final Object b) {
+        if (a.getClass() == b.getClass() && isWellKnownType(a)) {
+            // for these types equals() is consistent with comparing the string representation
+            return a.equals(b);
+        }
+        final boolean integralA = isIntegral(a);
+        final boolean integralB = isIntegral(b);
+        if (integralA && integralB) {
+            return ((Number) a).longValue() == ((Number) b).longValue();
+        }
+        if (integralA && b instanceof String) {
+            return isSameLong(((Number) a).longValue(), (String) b);
+        }
+        if (integralB && a instanceof String) {
+            return isSameLong(((Number) b).longValue(), (String) a);
+        }
+        if (a instanceof Boolean && b instanceof String) {
+            return b.equals(((Boolean) a).booleanValue() ? "true" : "false");
+        }
+        if (b instanceof Boolean && a instanceof String) {
+            return a.equals(((Boolean) b).booleanValue() ? "true" : "false");
+        }
+        return String.valueOf(a).equals(String.valueOf(b));
+    }
+
+    private static boolean isWellKnownType(final Object value) {
+        return value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || isIntegral(value)
+                || value instanceof Double
+                || value instanceof Float;
+    }
+
+    private static boolean isIntegral(final Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isIntegralArray(final Object value) {
+        return value instanceof long[]
+                || value instanceof int[]
+                || value instanceof short[]
+                || value instanceof byte[]
+                || value instanceof Long[]
+                || value instanceof Integer[]
+                || value instanceof Short[]
+                || value instanceof Byte[];
+    }
+
+    /**
+     * Check whether an element of an array of boxed values is {@code null}
+     */
+    private static boolean isNullElement(final Object array, final int index) {
+        return array instanceof Object[] && ((Object[]) array)[index] == null;
+    }
+
+    /**
+     * Get an element of an integral array, the element must not be {@code null}
+     */
+    private static long getLong(final Object array, final int index) {
+        if (array instanceof long[]) {
+            return ((long[]) array)[index];
+        } else if (array instanceof int[]) {
+            return ((int[]) array)[index];
+        } else if (array instanceof short[]) {
+            return ((short[]) array)[index];
+        } else if (array instanceof byte[]) {
+            return ((byte[]) array)[index];
+        }
+        return ((Number) ((Object[]) array)[index]).longValue();
+    }
+
+    /**
+     * Check whether the string is the decimal representation of the value,
+     * same as {@code Long.toString(value).equals(text)}
+     */
+    static boolean isSameLong(final long value, final String text) {
+        if (text == null) {
+            return false;
+        }
+        if (value == Long.MIN_VALUE) {
+            return Long.toString(value).equals(text);
+        }
+        final int length = text.length();
+        if (length == 0 || length > 20) {
+            return false;
+        }
+        long remaining = value;
+        int start = 0;
+        if (remaining < 0) {
+            if (text.charAt(0) != '-') {
+                return false;
             }
+            remaining = -remaining;
+            start = 1;
         }
+        int pos = length - 1;
+        do {
+            if (pos < start || text.charAt(pos) != (char) ('0' + (remaining % 10))) {
+                return false;
+            }
+            remaining /= 10;
+            pos--;
+        } while (remaining != 0);
+        return pos == start - 1;
+    }
 
-        return cleanedConfig;
+    /**
+     * Get a read only view on the properties hiding the ignored properties
+     * @param config The properties
+     * @return The view
+     */
+    public static Dictionary<String, Object> filterConfiguration(final Dictionary<String, Object> config) {
+        return new FilteredDictionary(config, (key, value) -> IGNORED_PROPERTIES.contains(key));
+    }
+
+    /**
+     * Get a read only view on the properties hiding the ignored properties and
+     * all properties with the same value in {@code base}
+     * @param config The properties
+     * @param base The base to compare with
+     * @return The view
+     */
+    public static Dictionary<String, Object> filterConfiguration(
+            final Dictionary<String, Object> config, final Dictionary<String, Object> base) {
+        return filterConfiguration(config, (key, value) -> isRedundantProperty(key, value, base));
+    }
+
+    /**
+     * Get a read only view on the properties hiding the ignored properties and
+     * all properties matching the filter
+     * @param config The properties
+     * @param hidden Returns {@code true} for properties to hide
+     * @return The view
+     */
+    public static Dictionary<String, Object> filterConfiguration(
+            final Dictionary<String, Object> config, final BiPredicate<String, Object> hidden) {
+        return new FilteredDictionary(
+                config, (key, value) -> IGNORED_PROPERTIES.contains(key) || hidden.test(key, value));
     }
 
     /**
      * Encode the value for the ldap filter: \, *, (, and ) should be escaped.
      */
-    private static String encode(final String value) {
-        return value.replace("\\", "\\\\")
-                .replace("*", "\\*")
-                .replace("(", "\\(")
-                .replace(")", "\\)");
+    static String encode(final String value) {
+        final int length = value.length();
+        int i = 0;
+        while (i < length && !isFilterSpecial(value.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return value;
+        }
+        final StringBuilder sb = new StringBuilder(length + 8);
+        sb.append(value, 0, i);
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (isFilterSpecial(c)) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isFilterSpecial(final char c) {
+        return c == '\\' || c == '*' || c == '(' || c == ')';
     }
 
     public static Configuration getConfiguration(
             final ConfigurationAdmin ca, final String factoryPid, final String configPidOrName)
             throws IOException, InvalidSyntaxException {
-        Configuration config = getOrCreateConfiguration(ca, factoryPid, configPidOrName, null, false);
-        if (config == null && factoryPid != null) {
-            config = getLegacyFactoryConfig(ca, factoryPid, null, configPidOrName);
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.CM_LOOKUP);
+        String outcome = "failed";
+        try {
+            Configuration config = getOrCreateConfiguration(ca, factoryPid, configPidOrName, null, false);
+            if (config == null && factoryPid != null) {
+                config = getLegacyFactoryConfig(ca, factoryPid, null, configPidOrName);
+            }
+            outcome = config != null ? "found" : "notFound";
+            return config;
+        } finally {
+            InstallerEvents.end(event, configPidOrName, factoryPid, outcome);
         }
-        return config;
+    }
+
+    /**
+     * Get a configuration, using the index if available.
+     * Configurations not known to the index are looked up and added to it.
+     * @param ca The configuration admin
+     * @param index The configuration index or {@code null}
+     * @param factoryPid The factory pid or {@code null}
+     * @param configPidOrName The pid or the name of a factory configuration
+     * @return The configuration or {@code null}
+     * @throws IOException - if access to persistent storage fails
+     * @throws InvalidSyntaxException
+     */
+    public static Configuration getConfiguration(
+            final ConfigurationAdmin ca,
+            final ConfigurationIndex index,
+            final String factoryPid,
+            final String configPidOrName)
+            throws IOException, InvalidSyntaxException {
+        final boolean indexed = index != null && index.isPopulated();
+        if (indexed) {
+            final Configuration cfg = index.get(factoryPid, configPidOrName);
+            if (cfg != null) {
+                return cfg;
+            }
+        }
+        final Configuration cfg = getConfiguration(ca, factoryPid, configPidOrName);
+        if (cfg != null && indexed) {
+            index.add(cfg);
+        }
+        return cfg;
     }
 
     public static Configuration createConfiguration(
@@ -209,8 +472,9 @@ abstract class ConfigUtil {
             if (createIfNeeded) {
                 result = ca.getConfiguration(configPidOrName, location);
             } else {
-                final String filter = "(" + Constants.SERVICE_PID + "=" + encode(configPidOrName) + ")";
+                final String filter = ConfigurationFilters.SHARED.getPidFilter(configPidOrName);
                 final Configuration[] configs = ca.listConfigurations(filter);
+                ConfigurationMetrics.SHARED.listConfigurations();
                 if (configs != null && configs.length > 0) {
                     result = configs[0];
                 }
@@ -219,13 +483,10 @@ abstract class ConfigUtil {
             if (createIfNeeded) {
                 result = ca.getFactoryConfiguration(factoryPid, configPidOrName, location);
             } else {
-                final String filter = "(&("
-                        + ConfigurationAdmin.SERVICE_FACTORYPID + "=" + encode(factoryPid)
-                        + ")("
-                        + Constants.SERVICE_PID + "="
-                        + encode(ConfigUtil.getPIDOfFactoryPID(factoryPid, configPidOrName))
-                        + "))";
+                final String filter = ConfigurationFilters.SHARED.getFactoryConfigurationFilter(
+                        factoryPid, ConfigUtil.getPIDOfFactoryPID(factoryPid, configPidOrName));
                 final Configuration[] configs = ca.listConfigurations(filter);
+                ConfigurationMetrics.SHARED.listConfigurations();
                 if (configs != null && configs.length > 0) {
                     result = configs[0];
                 }
@@ -235,39 +496,63 @@ abstract class ConfigUtil {
         return result;
     }
 
+    /**
+     * Get an old style factory configuration, using the index if available.
+     * Configurations not known to the index are looked up.
+     * @param ca The configuration admin
+     * @param index The configuration index or {@code null}
+     * @param factoryPid The factory pid
+     * @param aliasPid The alias pid or {@code null}
+     * @param pid The pid, used if no alias pid is provided
+     * @return The configuration or {@code null}
+     * @throws IOException - if access to persistent storage fails
+     * @throws InvalidSyntaxException
+     */
+    public static Configuration getLegacyFactoryConfig(
+            final ConfigurationAdmin ca,
+            final ConfigurationIndex index,
+            final String factoryPid,
+            final String aliasPid,
+            final String pid)
+            throws IOException, InvalidSyntaxException {
+        if (index != null && index.isPopulated()) {
+            final String configPid = (aliasPid != null ? aliasPid.substring(factoryPid.length() + 1) : pid);
+            final Configuration cfg = index.getLegacyFactoryConfiguration(factoryPid, configPid);
+            if (cfg != null) {
+                return cfg;
+            }
+        }
+        return getLegacyFactoryConfig(ca, factoryPid, aliasPid, pid);
+    }
+
     public static Configuration getLegacyFactoryConfig(
             final ConfigurationAdmin ca, final String factoryPid, final String aliasPid, final String pid)
             throws IOException, InvalidSyntaxException {
         final String configPid = (aliasPid != null ? aliasPid.substring(factoryPid.length() + 1) : pid);
 
-        Configuration result = null;
-
-        Configuration configs[] = null;
-        if (configPid != null) {
-            configs = ca.listConfigurations("(&("
-                    + ConfigurationAdmin.SERVICE_FACTORYPID + "=" + encode(factoryPid)
-                    + ")(" + Constants.SERVICE_PID + "=" + encode(configPid)
-                    + "))");
-        }
+        // a single query for all variants, the variants are checked in order of precedence
+        final Configuration[] configs = ca.listConfigurations(
+                ConfigurationFilters.SHARED.getLegacyFactoryConfigurationFilter(factoryPid, configPid));
+        ConfigurationMetrics.SHARED.listConfigurations();
         if (configs == null || configs.length == 0) {
-            configs = ca.listConfigurations("(&("
-                    + ConfigurationAdmin.SERVICE_FACTORYPID + "=" + encode(factoryPid)
-                    + ")(" + Constants.SERVICE_PID + "=" + encode(factoryPid + "." + configPid)
-                    + "))");
+            return null;
         }
-        if (configs == null || configs.length == 0) {
-            // check for old style with alias pid
-            configs = ca.listConfigurations("(&(" + ConfigurationAdmin.SERVICE_FACTORYPID
-                    + "=" + factoryPid + ")(" + ALIAS_KEY + "=" + encode(configPid)
-                    + "))");
-
-            if (configs != null && configs.length > 0) {
-                result = configs[0];
+        final String legacyPid = factoryPid + "." + configPid;
+        Configuration byLegacyPid = null;
+        Configuration byAlias = null;
+        for (final Configuration cfg : configs) {
+            final String cfgPid = cfg.getPid();
+            if (configPid != null && configPid.equals(cfgPid)) {
+                return cfg;
+            } else if (legacyPid.equals(cfgPid)) {
+                if (byLegacyPid == null) {
+                    byLegacyPid = cfg;
+                }
+            } else if (byAlias == null) {
+                byAlias = cfg;
             }
-        } else {
-            result = configs[0];
         }
-        return result;
+        return byLegacyPid != null ? byLegacyPid : byAlias;
     }
 
     public static boolean toBoolean(final Object obj, final boolean defaultValue) {
@@ -293,48 +578,14 @@ abstract class ConfigUtil {
     }
 
     /**
-     * Merge all dictionaries into a single dictionary in reverse order
-     * @param propertiesList The list of dictionaries
-     * @return The merged dictionary
-     */
-    public static Dictionary<String, Object> mergeReverseOrder(final List<Dictionary<String, Object>> propertiesList) {
-        Collections.reverse(propertiesList);
-        final Dictionary<String, Object> properties = new Hashtable<>();
-        for (final Dictionary<String, Object> dict : propertiesList) {
-            merge(properties, dict);
-        }
-        return properties;
-    }
-
-    /**
-     * Merge one dictionary into the other
-     * @param base Base dictionary
-     * @param props Overwriting dictionary
-     */
-    private static void merge(final Dictionary<String, Object> base, final Dictionary<String, Object> props) {
-        final Enumeration<String> keyIter = props.keys();
-        while (keyIter.hasMoreElements()) {
-            final String key = keyIter.nextElement();
-            base.put(key, props.get(key));
-        }
-    }
-
-    /**
-     * Removes all properties existing with same key and value in {@code base} from {@code properties}
-     * @param properties the properties to check and modify
+     * Check whether a property exists with the same value in {@code base}
+     * @param key The key of the property
+     * @param value The value of the property
      * @param base the base to compare with
+     * @return {@code true} if the property is redundant
      */
-    public static void removeRedundantProperties(
-            final Dictionary<String, Object> properties, final Dictionary<String, Object> base) {
-        final Enumeration<String> keyEnum = base.keys();
-        while (keyEnum.hasMoreElements()) {
-            final String key = keyEnum.nextElement();
-            final Object value = base.get(key);
-
-            final Object newValue = properties.get(key);
-            if (newValue != null && isSameValue(newValue, value)) {
-                properties.remove(key);
-            }
-        }
+    static boolean isRedundantProperty(final String key, final Object value, final Dictionary<String, Object> base) {
+        final Object baseValue = base.get(key);
+        return baseValue != null && isSameValue(value, baseValue);
     }
 }
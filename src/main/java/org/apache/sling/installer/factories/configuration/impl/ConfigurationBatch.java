@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the configurations needed by the tasks of one installer cycle.
+ *
+ * While tasks are created, their pids are added to the batch. When the first
+ * task of the batch asks whether the index can be used, all configurations of
+ * the batch are fetched with a single listing. Afterwards no pids can be added
+ * anymore and a new batch must be used for further tasks.
+ *
+ * Factory configurations are fetched by factory pid, this includes old style
+ * factory configurations, so that all lookups can be answered by the index.
+ */
+public class ConfigurationBatch extends ConfigurationIndex {
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The filter terms of the pids in this batch */
+    private final Set<String> terms = new LinkedHashSet<>();
+
+    /** Flag whether the configurations have been fetched */
+    private boolean fetched;
+
+    public ConfigurationBatch(final ConfigurationAdmin configAdmin) {
+        super(configAdmin);
+    }
+
+    /**
+     * Add a configuration to the batch
+     * @param factoryPid The factory pid or {@code null}
+     * @param pid The pid or the name of a factory configuration
+     * @return {@code false} if the configurations of this batch have already been fetched
+     */
+    public synchronized boolean add(final String factoryPid, final String pid) {
+        if (this.fetched) {
+            return false;
+        }
+        if (factoryPid != null) {
+            this.terms.add("(" + ConfigurationAdmin.SERVICE_FACTORYPID + "=" + ConfigUtil.encode(factoryPid) + ")");
+        } else if (pid != null) {
+            this.terms.add("(" + Constants.SERVICE_PID + "=" + ConfigUtil.encode(pid) + ")");
+        }
+        return true;
+    }
+
+    /**
+     * Fetches the configurations of this batch on first invocation.
+     * @return {@code true} if the configurations of the batch have been fetched
+     */
+    @Override
+    public boolean isPopulated() {
+        synchronized (this) {
+            if (!this.fetched) {
+                this.fetched = true;
+                if (!this.terms.isEmpty()) {
+                    final StringBuilder filter = new StringBuilder("(|");
+                    for (final String term : this.terms) {
+                        filter.append(term);
+                    }
+                    filter.append(')');
+                    try {
+                        this.populate(filter.toString());
+                    } catch (final IOException | InvalidSyntaxException e) {
+                        this.logger.debug("Unable to fetch configurations, looking up each configuration", e);
+                    }
+                }
+                this.terms.clear();
+            }
+        }
+        return super.isPopulated();
+    }
+}
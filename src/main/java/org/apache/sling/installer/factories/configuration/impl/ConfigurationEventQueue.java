@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.osgi.service.cm.ConfigurationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of configuration events with a single worker thread.
+ *
+ * Pending events are coalesced per pid: if an event for a pid is already
+ * pending, it is replaced by the newer one, keeping its position in the queue.
+ * As the worker reads the current state of the configuration when processing
+ * an update, only the latest event for a pid needs to be processed.
+ *
+ * The worker is started with {@link #start()}. On {@link #stop(long)} the
+ * pending events are processed before the worker ends.
+ */
+public class ConfigurationEventQueue implements Runnable {
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** Pending events by pid, in the order they have been queued. */
+    private final Map<String, ConfigurationEvent> pending = new LinkedHashMap<>();
+
+    /** Maximum number of pending pids. */
+    private final int capacity;
+
+    /** The event processor. */
+    private final Consumer<ConfigurationEvent> processor;
+
+    /** The worker thread, {@code null} if not started. */
+    private Thread worker;
+
+    /** Flag whether events are accepted. */
+    private boolean accepting = true;
+
+    /** Flag whether the worker is processing an event. */
+    private boolean processing;
+
+    /** Flag to stop the worker. */
+    private volatile boolean running = true;
+
+    public ConfigurationEventQueue(final int capacity, final Consumer<ConfigurationEvent> processor) {
+        this.capacity = capacity;
+        this.processor = processor;
+    }
+
+    /**
+     * Start the worker.
+     */
+    public void start() {
+        synchronized (this.pending) {
+            if (this.worker == null && this.running) {
+                this.worker = new Thread(this, "Apache Sling Configuration Installer Event Queue");
+                this.worker.setDaemon(true);
+                this.worker.start();
+            }
+        }
+    }
+
+    /**
+     * Queue an event.
+     * @param event The event
+     * @return {@code true} if the event has been queued, {@code false} if the queue is full
+     *         and the caller has to process the event itself.
+     */
+    public boolean offer(final ConfigurationEvent event) {
+        synchronized (this.pending) {
+            if (!this.accepting) {
+                return false;
+            }
+            if (this.pending.size() >= this.capacity && !this.pending.containsKey(event.getPid())) {
+                return false;
+            }
+            final ConfigurationEvent previous = this.pending.put(event.getPid(), event);
+            if (previous != null) {
+                logger.debug("Coalescing configuration event for {}", event.getPid());
+            }
+            this.pending.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Remove the pending event for a pid.
+     * @param pid The pid
+     * @return {@code true} if an event has been pending
+     */
+    public boolean remove(final String pid) {
+        synchronized (this.pending) {
+            final boolean removed = this.pending.remove(pid) != null;
+            if (removed) {
+                // wake up a waiting stop
+                this.pending.notifyAll();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Stop the worker. No further events are accepted, the pending events are
+     * processed, waiting at most for the timeout. Events still pending afterwards
+     * are discarded.
+     * @param timeout The maximum time to wait in milliseconds
+     */
+    public void stop(final long timeout) {
+        synchronized (this.pending) {
+            this.accepting = false;
+            if (this.worker != null) {
+                final long deadline = System.currentTimeMillis() + timeout;
+                long remaining = timeout;
+                while ((this.processing || !this.pending.isEmpty()) && remaining > 0) {
+                    try {
+                        this.pending.wait(remaining);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+            if (!this.pending.isEmpty()) {
+                logger.warn("Discarding {} pending configuration events", this.pending.size());
+            }
+            this.running = false;
+            this.pending.clear();
+            this.pending.notifyAll();
+        }
+    }
+
+    private ConfigurationEvent take() throws InterruptedException {
+        synchronized (this.pending) {
+            while (this.running && this.pending.isEmpty()) {
+                this.pending.wait();
+            }
+            if (!this.running) {
+                return null;
+            }
+            final Iterator<ConfigurationEvent> iter = this.pending.values().iterator();
+            final ConfigurationEvent event = iter.next();
+            iter.remove();
+            this.processing = true;
+            return event;
+        }
+    }
+
+    private void processed() {
+        synchronized (this.pending) {
+            this.processing = false;
+            // wake up a waiting stop
+            this.pending.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                final ConfigurationEvent event = this.take();
+                if (event != null) {
+                    try {
+                        this.processor.accept(event);
+                    } finally {
+                        this.processed();
+                    }
+                }
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final RuntimeException re) {
+                logger.warn("Unexpected exception while processing configuration event", re);
+            }
+        }
+    }
+}
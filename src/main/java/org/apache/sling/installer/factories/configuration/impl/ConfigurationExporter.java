@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.sling.installer.api.info.InfoProvider;
+import org.apache.sling.installer.api.serializer.ConfigurationSerializer;
+import org.apache.sling.installer.api.serializer.ConfigurationSerializerFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Export of configurations, either as a zip file with one {@code .cfg.json} file per
+ * configuration or as a single JSON document in the format of the OSGi configurator.
+ *
+ * The configurations are serialized one after the other directly into the output stream,
+ * so only a single configuration is held in memory at any time.
+ */
+class ConfigurationExporter {
+
+    /** Extension of the exported files in the zip */
+    static final String CFG_JSON_EXTENSION = ".cfg.json";
+
+    /** The logger */
+    private final Logger logger = LoggerFactory.getLogger(ConfigurationExporter.class);
+
+    private final ConfigurationAdmin configurationAdmin;
+
+    private final InfoProvider infoProvider;
+
+    private final ComponentDescriptionIndex componentDescriptions;
+
+    private final boolean hideRedundantProperties;
+
+    ConfigurationExporter(
+            @NotNull final ConfigurationAdmin configurationAdmin,
+            @NotNull final InfoProvider infoProvider,
+            @NotNull final ComponentDescriptionIndex componentDescriptions,
+            final boolean hideRedundantProperties) {
+        this.configurationAdmin = configurationAdmin;
+        this.infoProvider = infoProvider;
+        this.componentDescriptions = componentDescriptions;
+        this.hideRedundantProperties = hideRedundantProperties;
+    }
+
+    /**
+     * List the configurations to export, sorted by pid
+     * @param pidGlob Optional glob pattern for the pid, supporting '*' and '?'
+     * @param factoryPid Optional factory pid
+     * @return The configurations
+     * @throws IOException If the configurations can't be read
+     */
+    @NotNull
+    Configuration[] list(@Nullable final String pidGlob, @Nullable final String factoryPid) throws IOException {
+        final StringBuilder filter = new StringBuilder();
+        if (pidGlob != null) {
+            // '?' is not supported by LDAP filters, the result is filtered afterwards
+            filter.append('(')
+                    .append(Constants.SERVICE_PID)
+                    .append('=')
+                    .append(encodeGlob(pidGlob))
+                    .append(')');
+        }
+        if (factoryPid != null) {
+            filter.append('(')
+                    .append(ConfigurationAdmin.SERVICE_FACTORYPID)
+                    .append('=')
+                    .append(ConfigUtil.encode(factoryPid))
+                    .append(')');
+        }
+        if (pidGlob != null && factoryPid != null) {
+            filter.insert(0, "(&").append(')');
+        }
+        Configuration[] configs;
+        try {
+            configs = this.configurationAdmin.listConfigurations(filter.length() == 0 ? null : filter.toString());
+            ConfigurationMetrics.SHARED.listConfigurations();
+        } catch (final InvalidSyntaxException ise) {
+            throw new IOException("Invalid filter " + filter, ise);
+        }
+        if (configs == null) {
+            return new Configuration[0];
+        }
+        if (pidGlob != null && pidGlob.indexOf('?') != -1) {
+            configs = Arrays.stream(configs)
+                    .filter(cfg -> matches(pidGlob, cfg.getPid()))
+                    .toArray(Configuration[]::new);
+        }
+        Arrays.sort(configs, Comparator.comparing(Configuration::getPid));
+        return configs;
+    }
+
+    /**
+     * Write the configurations as a zip file
+     * @param configs The configurations
+     * @param out The output stream
+     * @return The number of exported configurations
+     * @throws IOException If writing fails
+     */
+    int writeZip(@NotNull final Configuration[] configs, @NotNull final OutputStream out) throws IOException {
+        int count = 0;
+        final ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        final OutputStream entryStream = new NonClosingOutputStream(zip);
+        final ConfigurationSerializer serializer =
+                ConfigurationSerializerFactory.create(ConfigurationSerializerFactory.Format.JSON);
+        for (final Configuration cfg : configs) {
+            final Dictionary<String, Object> properties = this.getProperties(cfg);
+            if (properties != null) {
+                zip.putNextEntry(new ZipEntry(cfg.getPid().concat(CFG_JSON_EXTENSION)));
+                this.serialize(serializer, cfg, properties, entryStream);
+                zip.closeEntry();
+                count++;
+            }
+        }
+        zip.finish();
+        zip.flush();
+        return count;
+    }
+
+    /**
+     * Write the configurations as a single JSON document with the pids as keys
+     * @param configs The configurations
+     * @param out The output stream
+     * @return The number of exported configurations
+     * @throws IOException If writing fails
+     */
+    int writeJson(@NotNull final Configuration[] configs, @NotNull final OutputStream out) throws IOException {
+        int count = 0;
+        final OutputStream entryStream = new NonClosingOutputStream(out);
+        final ConfigurationSerializer serializer =
+                ConfigurationSerializerFactory.create(ConfigurationSerializerFactory.Format.JSON);
+        out.write('{');
+        for (final Configuration cfg : configs) {
+            final Dictionary<String, Object> properties = this.getProperties(cfg);
+            if (properties != null) {
+                if (count > 0) {
+                    out.write(',');
+                }
+                out.write('\n');
+                out.write(toJsonString(cfg.getPid()).getBytes(StandardCharsets.UTF_8));
+                out.write(':');
+                this.serialize(serializer, cfg, properties, entryStream);
+                count++;
+            }
+        }
+        out.write("\n}\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return count;
+    }
+
+    private void serialize(
+            final ConfigurationSerializer serializer,
+            final Configuration cfg,
+            final Dictionary<String, Object> properties,
+            final OutputStream out)
+            throws IOException {
+        try {
+            // always emit in alphabetical order of keys
+            serializer.serialize(new SortedDictionary<>(properties), out);
+        } catch (final IOException ioe) {
+            throw ioe;
+        } catch (final Exception e) {
+            throw new IOException("Error serializing pid " + cfg.getPid(), e);
+        }
+    }
+
+    /**
+     * Get the properties to export, with the same redundant properties removed as for a single configuration
+     * @param cfg The configuration
+     * @return The properties or {@code null} if the configuration has no properties or has been deleted
+     */
+    @Nullable
+    Dictionary<String, Object> getProperties(@NotNull final Configuration cfg) {
+        final Dictionary<String, Object> props;
+        try {
+            props = cfg.getProperties();
+        } catch (final IllegalStateException ise) {
+            logger.debug("Configuration {} has been deleted during export", cfg.getPid());
+            return null;
+        }
+        if (props == null) {
+            return null;
+        }
+        if (!this.hideRedundantProperties) {
+            return ConfigUtil.filterConfiguration(props);
+        }
+        Dictionary<String, Object> mergedProperties =
+                ConfigTaskCreator.getDefaultProperties(this.infoProvider, cfg.getPid());
+        if (mergedProperties == null) {
+            mergedProperties = new Hashtable<>();
+        }
+        return ConfigUtil.filterConfiguration(
+                props,
+                ConfigurationSerializerWebConsolePlugin.getRedundantProperties(
+                        this.componentDescriptions,
+                        cfg.getFactoryPid() != null ? cfg.getFactoryPid() : cfg.getPid(),
+                        mergedProperties));
+    }
+
+    /**
+     * Match a value against a glob pattern supporting '*' for any sequence and '?' for a single character
+     */
+    static boolean matches(@NotNull final String glob, @NotNull final String value) {
+        int g = 0;
+        int v = 0;
+        int starGlob = -1;
+        int starValue = 0;
+        while (v < value.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == value.charAt(v))) {
+                g++;
+                v++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                starGlob = g++;
+                starValue = v;
+            } else if (starGlob != -1) {
+                g = starGlob + 1;
+                v = ++starValue;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    /**
+     * Encode a glob pattern for an LDAP filter, '*' is kept as a wildcard and '?' is turned into one
+     */
+    private static String encodeGlob(final String glob) {
+        final StringBuilder sb = new StringBuilder(glob.length());
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '?') {
+                sb.append('*');
+            } else if (c == '(' || c == ')' || c == '\\') {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create a quoted JSON string
+     */
+    static String toJsonString(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Output stream which does not close the underlying stream, serializers might close the stream passed to them
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.flush();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * Builder for the filters used to look up configurations in the configuration admin.
+ *
+ * Values are escaped with {@link ConfigUtil#encode(String)}. The filters for the
+ * most recently used pids are cached, as the same configurations are looked up
+ * repeatedly while resources are processed.
+ */
+final class ConfigurationFilters {
+
+    /**
+     * Shared instance.
+     */
+    static final ConfigurationFilters SHARED = new ConfigurationFilters(1024);
+
+    /** The type of a filter */
+    private enum Type {
+        PID,
+        FACTORY_CONFIGURATION,
+        LEGACY_FACTORY_CONFIGURATION
+    }
+
+    /**
+     * The key of a cached filter
+     */
+    private static final class Key {
+        private final Type type;
+        private final String factoryPid;
+        private final String pid;
+        private final int hashCode;
+
+        Key(final Type type, final String factoryPid, final String pid) {
+            this.type = type;
+            this.factoryPid = factoryPid;
+            this.pid = pid;
+            this.hashCode = Objects.hash(type, factoryPid, pid);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return type == other.type && Objects.equals(pid, other.pid) && Objects.equals(factoryPid, other.factoryPid);
+        }
+    }
+
+    /** The cached filters in access order */
+    private final Map<Key, String> cache;
+
+    ConfigurationFilters(final int maxSize) {
+        this.cache = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the filter for a configuration
+     * @param pid The pid
+     * @return The filter
+     */
+    String getPidFilter(final String pid) {
+        return this.get(new Key(Type.PID, null, pid));
+    }
+
+    /**
+     * Get the filter for a named factory configuration
+     * @param factoryPid The factory pid
+     * @param pid The pid of the configuration
+     * @return The filter
+     */
+    String getFactoryConfigurationFilter(final String factoryPid, final String pid) {
+        return this.get(new Key(Type.FACTORY_CONFIGURATION, factoryPid, pid));
+    }
+
+    /**
+     * Get the filter for an old style factory configuration. The filter matches
+     * configurations of the factory with the pid {@code configPid}, the pid
+     * {@code factoryPid.configPid} or the alias {@code configPid}.
+     * @param factoryPid The factory pid
+     * @param configPid The pid or the alias, might be {@code null}
+     * @return The filter
+     */
+    String getLegacyFactoryConfigurationFilter(final String factoryPid, final String configPid) {
+        return this.get(new Key(Type.LEGACY_FACTORY_CONFIGURATION, factoryPid, configPid));
+    }
+
+    /**
+     * Get the number of cached filters
+     * @return The number of filters
+     */
+    synchronized int size() {
+        return this.cache.size();
+    }
+
+    private String get(final Key key) {
+        synchronized (this) {
+            final String filter = this.cache.get(key);
+            if (filter != null) {
+                return filter;
+            }
+        }
+        final String filter = build(key);
+        synchronized (this) {
+            this.cache.put(key, filter);
+        }
+        return filter;
+    }
+
+    private static String build(final Key key) {
+        final StringBuilder sb = new StringBuilder(128);
+        switch (key.type) {
+            case PID:
+                appendEquals(sb, Constants.SERVICE_PID, key.pid);
+                break;
+            case FACTORY_CONFIGURATION:
+                sb.append("(&");
+                appendEquals(sb, ConfigurationAdmin.SERVICE_FACTORYPID, key.factoryPid);
+                appendEquals(sb, Constants.SERVICE_PID, key.pid);
+                sb.append(')');
+                break;
+            default:
+                sb.append("(&");
+                appendEquals(sb, ConfigurationAdmin.SERVICE_FACTORYPID, key.factoryPid);
+                if (key.pid == null) {
+                    appendEquals(sb, Constants.SERVICE_PID, key.factoryPid + ".null");
+                } else {
+                    sb.append("(|");
+                    appendEquals(sb, Constants.SERVICE_PID, key.pid);
+                    appendEquals(
+                            sb,
+                            Constants.SERVICE_PID,
+                            key.factoryPid.concat(".").concat(key.pid));
+                    appendEquals(sb, ConfigUtil.ALIAS_KEY, key.pid);
+                    sb.append(')');
+                }
+                sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    private static void appendEquals(final StringBuilder sb, final String name, final String value) {
+        sb.append('(').append(name).append('=').append(ConfigUtil.encode(value)).append(')');
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory index of the {@link Configuration} objects of the configuration admin.
+ *
+ * The index is populated with a single listing of all configurations and
+ * afterwards kept up to date by the configuration listener and the install
+ * and remove tasks. As configuration objects reflect the current state of the
+ * configuration, updates of known configurations do not need to be tracked.
+ *
+ * Configurations are indexed by pid. In addition old style factory configurations
+ * are indexed by their alias pid, these are only picked up by {@link #populate()}
+ * as the installer does not create such configurations anymore.
+ *
+ * A configuration missing in the index is unknown, not absent: it might have
+ * been created outside of the installer without an event being processed yet.
+ * Callers fall back to the configuration admin on a miss, see
+ * {@link ConfigUtil#getConfiguration(ConfigurationAdmin, ConfigurationIndex, String, String)}.
+ */
+public class ConfigurationIndex {
+
+    /**
+     * An indexed configuration. The pids are kept, as a deleted
+     * configuration object can't be asked for them anymore.
+     */
+    private static final class Entry {
+        final String pid;
+        final String factoryPid;
+        final Configuration configuration;
+
+        Entry(final Configuration configuration) {
+            this.pid = configuration.getPid();
+            this.factoryPid = configuration.getFactoryPid();
+            this.configuration = configuration;
+        }
+    }
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** Configuration admin. */
+    private final ConfigurationAdmin configAdmin;
+
+    /** Configurations by pid. */
+    private final Map<String, Entry> configurations = new ConcurrentHashMap<>();
+
+    /** Old style factory configurations by factory pid and alias pid. */
+    private final Map<String, Entry> aliases = new ConcurrentHashMap<>();
+
+    /** Alias keys by pid, to remove an alias without searching. */
+    private final Map<String, String> aliasKeys = new ConcurrentHashMap<>();
+
+    /** Flag whether the index has been populated. */
+    private volatile boolean populated;
+
+    public ConfigurationIndex(final ConfigurationAdmin configAdmin) {
+        this.configAdmin = configAdmin;
+    }
+
+    /**
+     * Populate the index with all configurations from the configuration admin.
+     * @throws IOException If the configurations can't be read
+     * @throws InvalidSyntaxException Never
+     */
+    public void populate() throws IOException, InvalidSyntaxException {
+        this.populate(null);
+    }
+
+    /**
+     * Populate the index with the configurations matching the filter.
+     * Configurations not matching the filter are looked up in the
+     * configuration admin.
+     * @param filter The filter or {@code null} for all configurations
+     * @throws IOException If the configurations can't be read
+     * @throws InvalidSyntaxException If the filter is invalid
+     */
+    protected void populate(final String filter) throws IOException, InvalidSyntaxException {
+        this.populated = false;
+        this.configurations.clear();
+        this.aliases.clear();
+        this.aliasKeys.clear();
+        final Configuration[] configs = this.configAdmin.listConfigurations(filter);
+        ConfigurationMetrics.SHARED.listConfigurations();
+        if (configs != null) {
+            for (final Configuration cfg : configs) {
+                final Entry entry = new Entry(cfg);
+                this.configurations.putIfAbsent(entry.pid, entry);
+                // old style factory configurations have a generated pid
+                if (entry.factoryPid != null && entry.pid.indexOf('~') == -1) {
+                    final Dictionary<String, Object> props = cfg.getProperties();
+                    final Object alias = props == null ? null : props.get(ConfigUtil.ALIAS_KEY);
+                    if (alias != null) {
+                        final String key = getAliasKey(entry.factoryPid, alias.toString());
+                        if (this.aliases.putIfAbsent(key, entry) == null) {
+                            this.aliasKeys.put(entry.pid, key);
+                        }
+                    }
+                }
+            }
+        }
+        this.populated = true;
+        logger.debug("Populated configuration index with {} configurations", this.configurations.size());
+    }
+
+    /**
+     * Check whether the index can be used for lookups
+     * @return {@code true} if the index has been populated
+     */
+    public boolean isPopulated() {
+        return this.populated;
+    }
+
+    /**
+     * Add a configuration to the index
+     * @param cfg The configuration
+     */
+    public void add(final Configuration cfg) {
+        final Entry entry = new Entry(cfg);
+        this.configurations.put(entry.pid, entry);
+    }
+
+    /**
+     * Remove a configuration from the index
+     * @param pid The pid of the configuration
+     */
+    public void remove(final String pid) {
+        final Entry entry = this.configurations.remove(pid);
+        if (entry != null) {
+            this.removeAlias(entry);
+        }
+    }
+
+    /**
+     * Remove a configuration which has been found to be deleted.
+     * @param factoryPid The factory pid or {@code null}
+     * @param configPidOrName The pid or the name of a factory configuration
+     */
+    public void invalidate(final String factoryPid, final String configPidOrName) {
+        final Entry entry = this.getEntry(factoryPid, configPidOrName);
+        if (entry != null) {
+            this.configurations.remove(entry.pid, entry);
+            this.removeAlias(entry);
+        }
+    }
+
+    private void removeAlias(final Entry entry) {
+        final String key = this.aliasKeys.remove(entry.pid);
+        if (key != null) {
+            this.aliases.remove(key, entry);
+        }
+    }
+
+    /**
+     * Get a configuration, same as {@link ConfigUtil#getConfiguration(ConfigurationAdmin, String, String)}
+     * @param factoryPid The factory pid or {@code null}
+     * @param configPidOrName The pid or the name of a factory configuration
+     * @return The configuration or {@code null} if not indexed
+     */
+    public Configuration get(final String factoryPid, final String configPidOrName) {
+        final Entry entry = this.getEntry(factoryPid, configPidOrName);
+        return entry == null ? null : entry.configuration;
+    }
+
+    /**
+     * Get an old style factory configuration, same as
+     * {@link ConfigUtil#getLegacyFactoryConfig(ConfigurationAdmin, String, String, String)}
+     * @param factoryPid The factory pid
+     * @param configPid The pid or alias of the configuration, might be {@code null}
+     * @return The configuration or {@code null} if not indexed
+     */
+    public Configuration getLegacyFactoryConfiguration(final String factoryPid, final String configPid) {
+        final Entry entry = this.getLegacyFactoryEntry(factoryPid, configPid);
+        return entry == null ? null : entry.configuration;
+    }
+
+    private Entry getEntry(final String factoryPid, final String configPidOrName) {
+        if (factoryPid == null) {
+            return this.configurations.get(configPidOrName);
+        }
+        final Entry result = getFactoryEntry(factoryPid, ConfigUtil.getPIDOfFactoryPID(factoryPid, configPidOrName));
+        if (result == null) {
+            return getLegacyFactoryEntry(factoryPid, configPidOrName);
+        }
+        return result;
+    }
+
+    private Entry getLegacyFactoryEntry(final String factoryPid, final String configPid) {
+        Entry result = null;
+        if (configPid != null) {
+            result = getFactoryEntry(factoryPid, configPid);
+        }
+        if (result == null) {
+            result = getFactoryEntry(factoryPid, factoryPid + "." + configPid);
+        }
+        if (result == null && configPid != null) {
+            result = this.aliases.get(getAliasKey(factoryPid, configPid));
+        }
+        return result;
+    }
+
+    private Entry getFactoryEntry(final String factoryPid, final String pid) {
+        final Entry entry = this.configurations.get(pid);
+        if (entry != null && factoryPid.equals(entry.factoryPid)) {
+            return entry;
+        }
+        return null;
+    }
+
+    private static String getAliasKey(final String factoryPid, final String alias) {
+        return factoryPid.concat("\n").concat(alias);
+    }
+}
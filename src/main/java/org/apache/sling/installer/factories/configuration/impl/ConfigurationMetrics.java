@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sling.installer.factories.configuration.ConfigurationInstallerMetrics;
+
+/**
+ * Metrics for the configuration operations.
+ *
+ * All recording methods are lock free, they only update {@link LongAdder}s
+ * and {@link LongAccumulator}s. Values are only aggregated when a snapshot
+ * is taken with {@link #getMetrics()}.
+ */
+public class ConfigurationMetrics implements ConfigurationInstallerMetrics {
+
+    /**
+     * Shared instance used by all tasks and listeners.
+     */
+    public static final ConfigurationMetrics SHARED = new ConfigurationMetrics();
+
+    /**
+     * A latency histogram with power of two buckets in microseconds.
+     */
+    static final class Timer {
+
+        /** Bucket {@code i} counts latencies in the range [2^(i-1), 2^i) microseconds. */
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Timer() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record a duration
+         * @param nanos The duration in nanoseconds
+         */
+        void record(final long nanos) {
+            final long value = Math.max(0, nanos);
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(TimeUnit.NANOSECONDS.toMicros(value))].increment();
+        }
+
+        /**
+         * Get the approximate percentile, the upper bound of the bucket containing it.
+         * @param percentile The percentile between 0 and 1
+         * @return The percentile in microseconds
+         */
+        long getPercentileMicros(final double percentile) {
+            final long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+            final long max = TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return i == 0 ? 0 : i >= Long.SIZE - 1 ? max : Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        void addTo(final Map<String, Number> metrics, final String name) {
+            final long total = count.sum();
+            metrics.put(name.concat(".count"), total);
+            metrics.put(
+                    name.concat(".meanMicros"),
+                    total == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / total));
+            metrics.put(name.concat(".maxMicros"), TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+            metrics.put(name.concat(".p50Micros"), getPercentileMicros(0.5));
+            metrics.put(name.concat(".p99Micros"), getPercentileMicros(0.99));
+        }
+    }
+
+    /** Execution of {@link ConfigInstallTask}s */
+    final Timer installTask = new Timer();
+
+    /** Execution of {@link ConfigRemoveTask}s */
+    final Timer removeTask = new Timer();
+
+    /** Time spent waiting for the lock of a configuration, see {@link Coordinator#getLock(String, String)} */
+    final Timer lockWait = new Timer();
+
+    /** Time spent waiting for the monitor of {@link Coordinator#SHARED} */
+    final Timer coordinatorWait = new Timer();
+
+    private final LongAdder listConfigurations = new LongAdder();
+
+    private final LongAdder updates = new LongAdder();
+
+    private final LongAdder deletes = new LongAdder();
+
+    private final LongAdder installsSkipped = new LongAdder();
+
+    private final LongAdder installsApplied = new LongAdder();
+
+    private final LongAdder writeBacks = new LongAdder();
+
+    private final LongAdder coordinatorHits = new LongAdder();
+
+    private final LongAdder coordinatorMisses = new LongAdder();
+
+    private final LongAdder coordinatorExpired = new LongAdder();
+
+    ConfigurationMetrics() {
+        // only the shared instance and tests
+    }
+
+    /**
+     * Record that the lock of a configuration has been acquired.
+     * @param start The time before trying to acquire the lock, see {@link System#nanoTime()}
+     */
+    public void lockAcquired(final long start) {
+        lockWait.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record that the monitor of the coordinator has been acquired.
+     * @param start The time before trying to acquire the monitor, see {@link System#nanoTime()}
+     */
+    public void coordinatorAcquired(final long start) {
+        coordinatorWait.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record the execution of an install task.
+     * @param start The start time of the execution, see {@link System#nanoTime()}
+     */
+    public void installExecuted(final long start) {
+        installTask.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record the execution of a remove task.
+     * @param start The start time of the execution, see {@link System#nanoTime()}
+     */
+    public void removeExecuted(final long start) {
+        removeTask.record(System.nanoTime() - start);
+    }
+
+    public void listConfigurations() {
+        listConfigurations.increment();
+    }
+
+    public void update() {
+        updates.increment();
+    }
+
+    public void delete() {
+        deletes.increment();
+    }
+
+    /**
+     * Record an install task which did not update the configuration
+     * as it already had the same data.
+     */
+    public void installSkipped() {
+        installsSkipped.increment();
+    }
+
+    /**
+     * Record an install task which created or updated the configuration.
+     */
+    public void installApplied() {
+        installsApplied.increment();
+    }
+
+    /**
+     * Record a configuration change written back to the installer.
+     */
+    public void writeBack() {
+        writeBacks.increment();
+    }
+
+    public void coordinatorHit() {
+        coordinatorHits.increment();
+    }
+
+    public void coordinatorMiss() {
+        coordinatorMisses.increment();
+    }
+
+    public void coordinatorExpired() {
+        coordinatorExpired.increment();
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        final Map<String, Number> metrics = new TreeMap<>();
+        installTask.addTo(metrics, "task.install");
+        removeTask.addTo(metrics, "task.remove");
+        lockWait.addTo(metrics, "lock.wait");
+        coordinatorWait.addTo(metrics, "coordinator.wait");
+        metrics.put("cm.listConfigurations", listConfigurations.sum());
+        metrics.put("cm.update", updates.sum());
+        metrics.put("cm.delete", deletes.sum());
+        final long skipped = installsSkipped.sum();
+        final long applied = installsApplied.sum();
+        metrics.put("install.skipped", skipped);
+        metrics.put("install.applied", applied);
+        metrics.put("install.skipRatio", skipped + applied == 0 ? 0.0d : (double) skipped / (skipped + applied));
+        metrics.put("event.writeBacks", writeBacks.sum());
+        metrics.put("coordinator.hits", coordinatorHits.sum());
+        metrics.put("coordinator.misses", coordinatorMisses.sum());
+        metrics.put("coordinator.expired", coordinatorExpired.sum());
+        return Collections.unmodifiableMap(metrics);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import org.apache.felix.inventory.Format;
+import org.apache.felix.inventory.InventoryPrinter;
+
+/**
+ * Inventory printer for the {@link ConfigurationMetrics}.
+ */
+public class ConfigurationMetricsPrinter implements InventoryPrinter {
+
+    /** The name of the printer. */
+    public static final String NAME = "slinginstallerconfigurations";
+
+    /** The title of the printer. */
+    public static final String TITLE = "Sling Installer Configurations";
+
+    private final ConfigurationMetrics metrics;
+
+    public ConfigurationMetricsPrinter(final ConfigurationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void print(final PrintWriter printWriter, final Format format, final boolean isZip) {
+        final Map<String, Number> values = this.metrics.getMetrics();
+        if (format == Format.JSON) {
+            printWriter.print('{');
+            boolean first = true;
+            for (final Map.Entry<String, Number> entry : values.entrySet()) {
+                if (!first) {
+                    printWriter.print(',');
+                }
+                first = false;
+                printWriter.print('"');
+                printWriter.print(entry.getKey());
+                printWriter.print("\":");
+                printWriter.print(entry.getValue());
+            }
+            printWriter.println('}');
+        } else {
+            printWriter.println("Apache Sling Installer Configuration Metrics");
+            printWriter.println();
+            for (final Map.Entry<String, Number> entry : values.entrySet()) {
+                printWriter.print(entry.getKey());
+                printWriter.print(" = ");
+                printWriter.println(entry.getValue());
+            }
+        }
+    }
+}
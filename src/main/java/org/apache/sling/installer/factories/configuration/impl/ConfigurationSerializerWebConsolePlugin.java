@@ -18,25 +18,24 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Dictionary;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 import jakarta.servlet.GenericServlet;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.sling.installer.api.info.InfoProvider;
+import org.apache.sling.installer.api.serializer.ConfigurationSerializer;
 import org.apache.sling.installer.api.serializer.ConfigurationSerializerFactory;
 import org.apache.sling.installer.api.serializer.ConfigurationSerializerFactory.Format;
 import org.jetbrains.annotations.NotNull;
@@ -47,7 +46,6 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.runtime.ServiceComponentRuntime;
-import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +66,10 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
     private static final String PARAMETER_PID = "pid";
     private static final String PARAMETER_FORMAT = "format";
     private static final String PARAMETER_HIDE_REDUNDANT_PROPERTIES = "hideRedundantProperties";
+    private static final String PARAMETER_FILTER = "filter";
+    private static final String PARAMETER_FACTORY_PID = "factoryPid";
+    private static final String EXPORT_ZIP = "/export.zip";
+    private static final String EXPORT_JSON = "/export.json";
 
     /** The logger */
     private final transient Logger logger = LoggerFactory.getLogger(ConfigurationSerializerWebConsolePlugin.class);
@@ -78,11 +80,33 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
     @Reference
     private transient InfoProvider infoProvider;
 
-    @Reference
     private transient ServiceComponentRuntime scr;
 
+    /** The change count of the service component runtime */
+    private transient volatile Object scrChangeCount;
+
+    /** Cached index of the component descriptions */
+    private transient volatile ComponentDescriptionIndex componentDescriptionIndex;
+
+    @Reference(updated = "updatedServiceComponentRuntime")
+    void bindServiceComponentRuntime(final ServiceComponentRuntime scr, final Map<String, Object> properties) {
+        this.scr = scr;
+        this.scrChangeCount = properties.get(Constants.SERVICE_CHANGECOUNT);
+    }
+
+    void updatedServiceComponentRuntime(final Map<String, Object> properties) {
+        this.scrChangeCount = properties.get(Constants.SERVICE_CHANGECOUNT);
+    }
+
     @Override
     public void service(final ServletRequest request, final ServletResponse response) throws IOException {
+        if (request instanceof HttpServletRequest) {
+            final String uri = ((HttpServletRequest) request).getRequestURI();
+            if (uri != null && (uri.endsWith(EXPORT_ZIP) || uri.endsWith(EXPORT_JSON))) {
+                export(request, response, uri.endsWith(EXPORT_ZIP));
+                return;
+            }
+        }
         final String pid = request.getParameter(PARAMETER_PID);
         final Configuration configuration;
         if (pid != null && !pid.trim().isEmpty()) {
@@ -108,22 +132,49 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
         dumpConfiguration(configuration, serializationFormat, hideRedundantProperties, response.getWriter());
     }
 
+    /**
+     * Export all configurations matching the request parameters, directly streamed into the response
+     */
+    private void export(final ServletRequest request, final ServletResponse response, final boolean zip)
+            throws IOException {
+        final String filter = request.getParameter(PARAMETER_FILTER);
+        final String factoryPid = request.getParameter(PARAMETER_FACTORY_PID);
+        final ConfigurationExporter exporter = new ConfigurationExporter(
+                configurationAdmin,
+                infoProvider,
+                getComponentDescriptionIndex(),
+                Boolean.parseBoolean(request.getParameter(PARAMETER_HIDE_REDUNDANT_PROPERTIES)));
+        final Configuration[] configs = exporter.list(
+                filter == null || filter.trim().isEmpty() ? null : filter.trim(),
+                factoryPid == null || factoryPid.trim().isEmpty() ? null : factoryPid.trim());
+        final int count;
+        if (zip) {
+            response.setContentType("application/zip");
+            setAttachment(response, "configurations.zip");
+            count = exporter.writeZip(configs, response.getOutputStream());
+        } else {
+            response.setContentType("application/json");
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            setAttachment(response, "configurations.json");
+            count = exporter.writeJson(configs, response.getOutputStream());
+        }
+        logger.debug("Exported {} configurations", count);
+    }
+
+    private void setAttachment(final ServletResponse response, final String fileName) {
+        if (response instanceof HttpServletResponse) {
+            ((HttpServletResponse) response)
+                    .setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        }
+    }
+
     private void dumpConfiguration(
             @Nullable Configuration configuration,
             @NotNull ConfigurationSerializerFactory.Format serializationFormat,
             boolean hideRedundantProperties,
             @NotNull PrintWriter pw) {
-        // map with key = configuration pid and value = Set<ComponentDescriptionDTO>
-        Map<String, Set<ComponentDescriptionDTO>> allComponentDescriptions = new HashMap<>();
+        final ComponentDescriptionIndex allComponentDescriptions = getComponentDescriptionIndex();
         String pid = configuration != null ? configuration.getPid() : "";
-        scr.getComponentDescriptionDTOs().stream().forEach(dto -> {
-            for (String configPid : dto.configurationPid) {
-                // the same PID might be bound to multiple component descriptions
-                allComponentDescriptions
-                        .computeIfAbsent(configPid, k -> new HashSet<ComponentDescriptionDTO>())
-                        .add(dto);
-            }
-        });
 
         pw.println("<script type=\"text/javascript\" src=\"" + RES_LOC + "clipboard.js\"></script>");
         pw.print("<form method='get'>");
@@ -181,14 +232,14 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
         if (configuration != null) {
             pidReferencedFromComponentDescription =
                     configuration.getFactoryPid() != null ? configuration.getFactoryPid() : configuration.getPid();
-            Set<ComponentDescriptionDTO> componentDescriptions =
+            final ComponentDescriptionIndex.Entry componentDescriptions =
                     allComponentDescriptions.get(pidReferencedFromComponentDescription);
             if (componentDescriptions != null) {
                 if (!sb.isEmpty()) {
                     sb.append(" and ");
                 }
                 sb.append("from component description(s) of ");
-                sb.append(componentDescriptions.stream()
+                sb.append(componentDescriptions.getDescriptions().stream()
                         .map(componentDescription -> String.format(
                                 "<a href=\"components/%d/%s/%s\">component \"%s\" (bundle %d)</a>",
                                 componentDescription.bundle.id,
@@ -238,25 +289,32 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
                 pw.print("No configuration properties for pid '" + escapeXml(pid) + "' found!");
                 pw.println("</p>");
             } else {
-                properties = ConfigUtil.cleanConfiguration(properties);
                 if (hideRedundantProperties) {
-                    removeComponentDefaultProperties(
-                            allComponentDescriptions,
-                            pidReferencedFromComponentDescription,
+                    properties = ConfigUtil.filterConfiguration(
                             properties,
-                            mergedProperties);
-                    ConfigUtil.removeRedundantProperties(properties, mergedProperties);
+                            getRedundantProperties(
+                                    allComponentDescriptions, pidReferencedFromComponentDescription, mergedProperties));
+                } else {
+                    properties = ConfigUtil.filterConfiguration(properties);
                 }
 
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    // always emit in alphabetical order of keys
-                    ConfigurationSerializerFactory.create(serializationFormat)
-                            .serialize(new SortedDictionary<>(properties), baos);
+                boolean textareaOpen = false;
+                try {
+                    final ConfigurationSerializer serializer =
+                            ConfigurationSerializerFactory.create(serializationFormat);
                     pw.println("<textarea rows=\"20\" cols=\"120\" id=\"output\" readonly>");
-                    pw.print(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+                    textareaOpen = true;
+                    // stream the serialized configuration escaped into the page
+                    try (OutputStream out = new HtmlEscapingOutputStream(pw)) {
+                        // always emit in alphabetical order of keys
+                        serializer.serialize(new SortedDictionary<>(properties), out);
+                    }
                     pw.println("</textarea>");
                     pw.println("<button type='button' id='copy'>Copy to Clipboard</a>");
                 } catch (Exception e) {
+                    if (textareaOpen) {
+                        pw.println("</textarea>");
+                    }
                     pw.print("<p class='ui-state-error-text'>");
                     pw.print("Error serializing pid '" + escapeXml(pid) + "': " + e.getMessage());
                     pw.println("</p>");
@@ -268,6 +326,32 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
         }
         pw.println("</table>");
         pw.print("</form>");
+        printExportForm(pw);
+    }
+
+    private void printExportForm(@NotNull final PrintWriter pw) {
+        pw.print("<form method='get' action='" + LABEL + EXPORT_ZIP + "'>");
+        pw.println("<table class='content' cellpadding='0' cellspacing='0' width='100%'>");
+        titleHtml(
+                pw,
+                "Export Configurations",
+                "Export all configurations with a PID matching the filter (supporting '*' and '?') and/or with the given factory PID,"
+                        + " either as a ZIP file with one .cfg.json file per configuration or as a single JSON document.");
+        tr(pw);
+        tdLabel(pw, "Filter");
+        tdContent(pw);
+        pw.print("<input type='text' name='" + PARAMETER_FILTER
+                + "' placeholder='PID filter, e.g. org.apache.sling.*'>");
+        pw.print("&nbsp;&nbsp;<input type='text' name='" + PARAMETER_FACTORY_PID + "' placeholder='Factory PID'>");
+        pw.print("&nbsp;&nbsp;<input type='checkbox' name='" + PARAMETER_HIDE_REDUNDANT_PROPERTIES
+                + "' value='true' checked> Hide Properties");
+        pw.print("&nbsp;&nbsp;<input type='submit' value='Export ZIP' class='submit'>");
+        pw.println("&nbsp;&nbsp;<input type='submit' value='Export JSON' class='submit' formaction='" + LABEL
+                + EXPORT_JSON + "'>");
+        closeTd(pw);
+        closeTr(pw);
+        pw.println("</table>");
+        pw.print("</form>");
     }
 
     private void tdContent(@NotNull final PrintWriter pw) {
@@ -355,40 +439,50 @@ public class ConfigurationSerializerWebConsolePlugin extends GenericServlet {
     }
 
     /**
-     * Removes all configuration properties from the given dictionary whose values are equal to all connected DS component properties set in the component description
-     * and which are not set in the merged (i.e. inherited) properties.
+     * Get the index of the component descriptions. The index is reused as long as the
+     * change count of the service component runtime does not change.
+     */
+    @NotNull
+    private ComponentDescriptionIndex getComponentDescriptionIndex() {
+        // get the change count first, a concurrent change results in a rebuild on the next request
+        final Object changeCount = this.scrChangeCount;
+        ComponentDescriptionIndex index = this.componentDescriptionIndex;
+        if (index == null || !index.isCurrent(changeCount)) {
+            index = new ComponentDescriptionIndex(scr.getComponentDescriptionDTOs(), changeCount);
+            if (changeCount != null) {
+                this.componentDescriptionIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the filter for redundant configuration properties. A property is redundant if it has the same value in the
+     * merged (i.e. inherited) properties, or if it is not set in the merged properties and its value is equal to all
+     * connected DS component properties set in the component description.
      * @param allComponentDescriptions
      * @param pidReferencedFromComponentDescription The PID referenced in the component description
-     * @param properties all properties of the configuration (is potentially modified through this method)
      * @param mergedProperties the merged/inherited properties from some other OSGi installer resource
+     * @return A filter returning {@code true} for redundant properties
      */
-    private void removeComponentDefaultProperties(
-            @NotNull final Map<String, Set<ComponentDescriptionDTO>> allComponentDescriptions,
+    @NotNull
+    static BiPredicate<String, Object> getRedundantProperties(
+            @NotNull final ComponentDescriptionIndex allComponentDescriptions,
             @NotNull final String pidReferencedFromComponentDescription,
-            @NotNull final Dictionary<String, Object> properties,
             @NotNull final Dictionary<String, Object> mergedProperties) {
-        Set<ComponentDescriptionDTO> componentDescriptions =
+        final ComponentDescriptionIndex.Entry componentDescriptions =
                 allComponentDescriptions.get(pidReferencedFromComponentDescription);
-        if (componentDescriptions != null) {
-            final Enumeration<String> e = properties.keys();
-            while (e.hasMoreElements()) {
-                final String key = e.nextElement();
-                final Object newValue = properties.get(key);
-                // check all bound component descriptions
-                Set<Object> defaultValues = componentDescriptions.stream()
-                        .map(dto -> dto.properties.get(key))
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toSet());
-                if (defaultValues.size() != 1) {
-                    // if different components have different values for the same key, we cannot remove it
-                    continue;
-                }
-                Object defaultValue = defaultValues.iterator().next();
-                if (ConfigUtil.isSameValue(newValue, defaultValue) && mergedProperties.get(key) == null) {
-                    properties.remove(key);
-                }
+        return (key, value) -> {
+            if (mergedProperties.get(key) != null) {
+                return ConfigUtil.isRedundantProperty(key, value, mergedProperties);
             }
-        }
+            if (componentDescriptions == null) {
+                return false;
+            }
+            // null if different components have different values for the same key, we cannot remove it then
+            final Object defaultValue = componentDescriptions.getDefaultValue(key);
+            return defaultValue != null && ConfigUtil.isSameValue(value, defaultValue);
+        };
     }
 
     @NotNull
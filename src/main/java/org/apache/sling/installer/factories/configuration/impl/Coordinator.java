@@ -18,9 +18,12 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +31,18 @@ import org.slf4j.LoggerFactory;
 /**
  * Coordinator service.
  *
- * All operations should be synced on the {@link #SHARED} instance.
+ * All operations on a configuration should be synced on the lock
+ * returned by {@link #getLock(String, String)} for that configuration.
+ *
+ * Operations are indexed by pid, factory pid and type. In addition
+ * all operations are kept in a queue in the order they were added,
+ * which is used to expire them after {@link #EXPIRY}. Expiry is based
+ * on the monotonic {@link System#nanoTime()} clock.
+ *
+ * Operations which carry the change count of the configuration are
+ * not expired. At most one of them is kept per key and it is matched
+ * against the change count of the configuration when an event arrives,
+ * which recognizes own changes regardless of the event latency.
  */
 public class Coordinator {
 
@@ -42,6 +56,16 @@ public class Coordinator {
      */
     private static final long EXPIRY = 5000;
 
+    /**
+     * The expiry in nanoseconds
+     */
+    private static final long EXPIRY_NANOS = TimeUnit.MILLISECONDS.toNanos(EXPIRY);
+
+    /**
+     * Number of lock stripes, must be a power of two.
+     */
+    private static final int LOCK_STRIPES = 64;
+
     /**
      * An operation
      */
@@ -49,19 +73,66 @@ public class Coordinator {
         public final String pid;
         public final String factoryPid;
         public final boolean isDelete;
+        /** Creation time in nanoseconds, see {@link System#nanoTime()} */
         public final long created;
+        /** Change count of the configuration after the operation or {@code -1} if not tracked */
+        public final long changeCount;
+
+        /** Flag whether this operation has been returned by {@link Coordinator#get(String, String, boolean)} */
+        boolean consumed;
 
         public Operation(final String pid, final String factoryPid, final boolean isDelete) {
-            created = System.currentTimeMillis();
+            this(pid, factoryPid, isDelete, -1);
+        }
+
+        public Operation(final String pid, final String factoryPid, final boolean isDelete, final long changeCount) {
+            created = System.nanoTime();
             this.pid = pid;
             this.factoryPid = factoryPid;
             this.isDelete = isDelete;
+            this.changeCount = changeCount;
         }
 
         @Override
         public String toString() {
             return "Operation [pid=" + pid + ", factoryPid=" + factoryPid + ", isDelete=" + isDelete + ", created="
-                    + created + "]";
+                    + created + ", changeCount=" + changeCount + "]";
+        }
+    }
+
+    /**
+     * The key of an operation
+     */
+    private static final class Key {
+        private final String pid;
+        private final String factoryPid;
+        private final boolean isDelete;
+        private final int hashCode;
+
+        Key(final String pid, final String factoryPid, final boolean isDelete) {
+            this.pid = pid;
+            this.factoryPid = factoryPid;
+            this.isDelete = isDelete;
+            this.hashCode = Objects.hash(pid, factoryPid, isDelete);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return isDelete == other.isDelete
+                    && Objects.equals(pid, other.pid)
+                    && Objects.equals(factoryPid, other.factoryPid);
         }
     }
 
@@ -71,57 +142,199 @@ public class Coordinator {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * The list of operations.
+     * The operations by key, in the order they were added.
      */
-    private final List<Operation> operations = new ArrayList<Coordinator.Operation>();
+    private final Map<Key, Deque<Operation>> operations = new HashMap<>();
+
+    /**
+     * All operations in the order they were added, used for expiry.
+     * Consumed operations are dropped lazily once they reach the head.
+     */
+    private final Deque<Operation> expiryQueue = new ArrayDeque<>();
+
+    /**
+     * The operations carrying a change count by key, these do not expire.
+     */
+    private final Map<Key, Operation> tracked = new HashMap<>();
+
+    /**
+     * The lock stripes.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
 
     /**
      * Private constructor
      */
     private Coordinator() {
-        // private constructor
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the lock guarding a configuration.
+     * Factory configurations are guarded by the lock of their factory pid, this
+     * ensures that old style factory configurations with a generated pid and the
+     * installer resource for it use the same lock.
+     * @param pid The pid
+     * @param factoryPid The factory pid or {@code null}
+     * @return The lock object to synchronize on
+     */
+    public Object getLock(final String pid, final String factoryPid) {
+        final String key = factoryPid != null ? factoryPid : pid;
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (LOCK_STRIPES - 1)];
     }
 
     public void add(final Operation op) {
-        this.cleanup();
-        this.operations.add(op);
-        logger.debug("Adding {}", op);
+        final long start = System.nanoTime();
+        synchronized (this) {
+            ConfigurationMetrics.SHARED.coordinatorAcquired(start);
+            if (op.changeCount >= 0) {
+                // the latest operation supersedes all earlier ones for the configuration
+                this.tracked.put(new Key(op.pid, op.factoryPid, op.isDelete), op);
+                this.tracked.remove(new Key(op.pid, op.factoryPid, !op.isDelete));
+                logger.debug("Adding {}", op);
+                return;
+            }
+            this.cleanup(System.nanoTime());
+            this.operations
+                    .computeIfAbsent(new Key(op.pid, op.factoryPid, op.isDelete), k -> new ArrayDeque<>())
+                    .addLast(op);
+            this.expiryQueue.addLast(op);
+            logger.debug("Adding {}", op);
+        }
     }
 
     public Operation get(final String pid, final String factoryPid, final boolean isDelete) {
-        this.cleanup();
-        logger.debug("Searching {} : {} - {}", new Object[] {pid, factoryPid, isDelete});
-        Operation result = null;
-        final Iterator<Operation> i = this.operations.iterator();
-        while (i.hasNext()) {
-            final Operation op = i.next();
-            if (op.isDelete == isDelete) {
-                if (op.pid.equals(pid)) {
-                    if ((op.factoryPid == null && factoryPid == null)
-                            || (op.factoryPid != null && op.factoryPid.equals(factoryPid))) {
-                        result = op;
-                        i.remove();
-                        break;
-                    }
+        final long start = System.nanoTime();
+        synchronized (this) {
+            ConfigurationMetrics.SHARED.coordinatorAcquired(start);
+            this.cleanup(System.nanoTime());
+            logger.debug("Searching {} : {} - {}", pid, factoryPid, isDelete);
+            final Operation result = this.poll(new Key(pid, factoryPid, isDelete));
+            this.record(result);
+            logger.debug("Result ({} : {} - {}) : {}", pid, factoryPid, isDelete, result);
+            return result;
+        }
+    }
+
+    /**
+     * Check whether an operation without change count is recorded for a configuration,
+     * that is the installer changed the configuration and the event for this change
+     * has not been received yet. The operation is not consumed.
+     * @param pid The pid
+     * @param factoryPid The factory pid or {@code null}
+     * @return {@code true} if an operation is pending
+     */
+    public boolean isPending(final String pid, final String factoryPid) {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            ConfigurationMetrics.SHARED.coordinatorAcquired(start);
+            this.cleanup(System.nanoTime());
+            return this.operations.containsKey(new Key(pid, factoryPid, false))
+                    || this.operations.containsKey(new Key(pid, factoryPid, true));
+        }
+    }
+
+    /**
+     * Get the operation matching the current state of a configuration.
+     * An update matches if the configuration still has the change count recorded
+     * with the operation. The operation is kept as further events for the same
+     * state are own changes as well; it is dropped once the configuration has
+     * been changed by someone else. A delete is matched once, and drops any
+     * update recorded for the configuration.
+     * If no operation with a change count is recorded, the operations without
+     * a change count are searched as with {@link #get(String, String, boolean)}.
+     * @param pid The pid
+     * @param factoryPid The factory pid or {@code null}
+     * @param isDelete Whether the event is a delete
+     * @param changeCount The current change count of the configuration, ignored for deletes
+     * @return The matching operation or {@code null}
+     */
+    public Operation get(final String pid, final String factoryPid, final boolean isDelete, final long changeCount) {
+        final long start = System.nanoTime();
+        synchronized (this) {
+            ConfigurationMetrics.SHARED.coordinatorAcquired(start);
+            this.cleanup(System.nanoTime());
+            logger.debug("Searching {} : {} - {} at change count {}", pid, factoryPid, isDelete, changeCount);
+            final Key key = new Key(pid, factoryPid, isDelete);
+            Operation result = null;
+            final Operation op = this.tracked.get(key);
+            if (op != null) {
+                if (isDelete) {
+                    this.tracked.remove(key);
+                    result = op;
+                } else if (op.changeCount == changeCount) {
+                    result = op;
+                } else {
+                    logger.debug("Dropping superseded {}", op);
+                    this.tracked.remove(key);
                 }
+            } else {
+                result = this.poll(key);
+            }
+            if (isDelete) {
+                this.tracked.remove(new Key(pid, factoryPid, false));
+            }
+            this.record(result);
+            logger.debug("Result ({} : {} - {}) : {}", pid, factoryPid, isDelete, result);
+            return result;
+        }
+    }
+
+    /**
+     * Remove the oldest operation without change count for the key
+     * @param key The key
+     * @return The operation or {@code null}
+     */
+    private Operation poll(final Key key) {
+        Operation result = null;
+        final Deque<Operation> ops = this.operations.get(key);
+        if (ops != null) {
+            result = ops.pollFirst();
+            if (ops.isEmpty()) {
+                this.operations.remove(key);
+            }
+            if (result != null) {
+                result.consumed = true;
             }
         }
-        logger.debug("Result ({} : {} - {}) : {}", new Object[] {pid, factoryPid, isDelete, result});
         return result;
     }
 
+    private void record(final Operation result) {
+        if (result != null) {
+            ConfigurationMetrics.SHARED.coordinatorHit();
+        } else {
+            ConfigurationMetrics.SHARED.coordinatorMiss();
+        }
+    }
+
     /**
-     * Clean up the list of operations.
+     * Clean up the operations.
      * Remove all entries which are older then the {@link #EXPIRY}
+     * and all consumed entries at the head of the expiry queue.
+     * @param now The current time in nanoseconds
      */
-    private void cleanup() {
-        final long time = System.currentTimeMillis() - EXPIRY;
-        final Iterator<Operation> i = this.operations.iterator();
-        while (i.hasNext()) {
-            final Operation op = i.next();
-            if (op.created <= time) {
+    private void cleanup(final long now) {
+        Operation op;
+        while ((op = this.expiryQueue.peekFirst()) != null) {
+            if (op.consumed) {
+                this.expiryQueue.pollFirst();
+            } else if (now - op.created >= EXPIRY_NANOS) {
                 logger.debug("Deleting expired {}", op);
-                i.remove();
+                ConfigurationMetrics.SHARED.coordinatorExpired();
+                this.expiryQueue.pollFirst();
+                final Key key = new Key(op.pid, op.factoryPid, op.isDelete);
+                final Deque<Operation> ops = this.operations.get(key);
+                if (ops != null) {
+                    ops.remove(op);
+                    if (ops.isEmpty()) {
+                        this.operations.remove(key);
+                    }
+                }
             } else {
                 break;
             }
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Debounces the writes of configurations.
+ *
+ * Instead of writing a configuration, an install task schedules the write.
+ * The write is executed once the delay has passed, writes scheduled for the
+ * same pid in the meantime replace the pending write. This avoids writing
+ * intermediate states when several resources for the same configuration
+ * arrive one after the other.
+ *
+ * A write is attempted only once. Its result is kept until the install task
+ * picks it up with {@link #getResult(String)} in the next installer cycle
+ * and sets the state of the resource. The installer is notified through the
+ * callback passed to the constructor once a write has been attempted.
+ *
+ * Writes are executed while holding the lock of the configuration, see
+ * {@link Coordinator#getLock(String, String)}.
+ */
+public class DebouncedWriter {
+
+    /** A pending write. */
+    private static final class Pending {
+        final Object lock;
+        BooleanSupplier write;
+        ScheduledFuture<?> future;
+
+        Pending(final Object lock, final BooleanSupplier write) {
+            this.lock = lock;
+            this.write = write;
+        }
+    }
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** Pending writes by pid. */
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    /** Results of attempted writes by pid, not picked up yet. */
+    private final Map<String, Boolean> results = new HashMap<>();
+
+    /** The delay in milliseconds. */
+    private final long delay;
+
+    /** Callback invoked after a write has been attempted or null. */
+    private final Runnable attempted;
+
+    /** The executor. */
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Flag whether the writer has been stopped. */
+    private boolean stopped;
+
+    public DebouncedWriter(final long delay) {
+        this(delay, null);
+    }
+
+    public DebouncedWriter(final long delay, final Runnable attempted) {
+        this.delay = delay;
+        this.attempted = attempted;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "Apache Sling Configuration Installer Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedule a write, replacing a pending write for the same pid.
+     * The delay of a pending write is not extended.
+     * @param pid The pid
+     * @param lock The lock of the configuration
+     * @param write The write, returning whether the configuration has been written
+     * @return {@code false} if the writer has been stopped and the caller has to write itself
+     */
+    public synchronized boolean schedule(final String pid, final Object lock, final BooleanSupplier write) {
+        if (this.stopped) {
+            return false;
+        }
+        this.results.remove(pid);
+        final Pending previous = this.pending.get(pid);
+        if (previous != null) {
+            logger.debug("Replacing pending write for {}", pid);
+            previous.write = write;
+            return true;
+        }
+        final Pending p = new Pending(lock, write);
+        this.pending.put(pid, p);
+        p.future = this.executor.schedule(() -> this.execute(pid, p), this.delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Get and clear the result of the last attempted write for a pid.
+     * @param pid The pid
+     * @return {@code true} if the configuration has been written, {@code false} if the
+     *      write failed and {@code null} if no write has been attempted
+     */
+    public synchronized Boolean getResult(final String pid) {
+        return this.results.remove(pid);
+    }
+
+    /**
+     * Cancel a pending write without executing it.
+     * @param pid The pid
+     */
+    public synchronized void cancel(final String pid) {
+        final Pending p = this.pending.remove(pid);
+        if (p != null) {
+            p.future.cancel(false);
+            logger.debug("Cancelled pending write for {}", pid);
+        }
+        this.results.remove(pid);
+    }
+
+    /**
+     * Stop the writer. Pending writes are discarded, the resources are
+     * still to be installed and are handled again by the installer.
+     */
+    public void stop() {
+        synchronized (this) {
+            this.stopped = true;
+            if (!this.pending.isEmpty()) {
+                logger.debug("Discarding {} pending writes", this.pending.size());
+            }
+            this.pending.clear();
+            this.results.clear();
+        }
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Get the number of pending writes
+     * @return The number of pending writes
+     */
+    public synchronized int size() {
+        return this.pending.size();
+    }
+
+    private void execute(final String pid, final Pending p) {
+        synchronized (p.lock) {
+            final BooleanSupplier write;
+            synchronized (this) {
+                if (this.pending.get(pid) != p) {
+                    // cancelled in the meantime
+                    return;
+                }
+                this.pending.remove(pid);
+                write = p.write;
+            }
+            boolean written = false;
+            try {
+                written = write.getAsBoolean();
+            } catch (final RuntimeException re) {
+                logger.warn("Unexpected exception while writing configuration " + pid, re);
+            }
+            synchronized (this) {
+                if (this.stopped) {
+                    return;
+                }
+                this.results.put(pid, written);
+            }
+        }
+        if (this.attempted != null) {
+            this.attempted.run();
+        }
+    }
+}
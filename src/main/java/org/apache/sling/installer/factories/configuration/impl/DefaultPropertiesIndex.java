@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.event.InstallationEvent;
+import org.apache.sling.installer.api.event.InstallationListener;
+import org.apache.sling.installer.api.info.InfoProvider;
+import org.apache.sling.installer.api.info.Resource;
+import org.apache.sling.installer.api.info.ResourceGroup;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the merged default properties of all installed configurations,
+ * keyed by entity id.
+ *
+ * The index is bound to the {@link InfoProvider} of the installer and is
+ * built lazily with a single pass over the installed resources on the first
+ * lookup. Afterwards, only the entry of an entity for which the installer
+ * reports a processed configuration resource is updated, on the next lookup
+ * of that entity. Other events, like processed bundles, don't change the
+ * merge sources. An entry whose merge sources did not change keeps its merged
+ * dictionary. The merged dictionaries share the dictionaries of their merge
+ * sources, see {@link LayeredDictionary}.
+ *
+ * The dictionaries returned by this index are shared and must not be modified.
+ */
+public class DefaultPropertiesIndex implements InstallationListener {
+
+    /**
+     * Shared instance.
+     */
+    public static final DefaultPropertiesIndex SHARED = new DefaultPropertiesIndex();
+
+    /**
+     * The merged properties of an entity together with a key identifying the merge sources.
+     */
+    private static final class Entry {
+        final String sourceKey;
+        final List<Dictionary<String, Object>> sources;
+        private volatile Dictionary<String, Object> merged;
+
+        Entry(final String sourceKey, final List<Dictionary<String, Object>> sources) {
+            this.sourceKey = sourceKey;
+            this.sources = sources;
+        }
+
+        Dictionary<String, Object> getMerged() {
+            Dictionary<String, Object> result = this.merged;
+            if (result == null) {
+                result = LayeredDictionary.of(this.sources);
+                this.merged = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * The info provider this index is built from, {@code null} if inactive.
+     */
+    private volatile InfoProvider infoProvider;
+
+    /**
+     * The current index, {@code null} if not built yet.
+     */
+    private volatile Map<String, Entry> entries;
+
+    /**
+     * Entity ids of processed configurations whose entries need to be updated.
+     */
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    DefaultPropertiesIndex() {
+        // package private constructor
+    }
+
+    /**
+     * Activate the index for the info provider
+     * @param provider The info provider
+     */
+    public synchronized void activate(final InfoProvider provider) {
+        this.entries = null;
+        this.infoProvider = provider;
+    }
+
+    /**
+     * Deactivate the index and release all cached data.
+     */
+    public synchronized void deactivate() {
+        this.infoProvider = null;
+        this.entries = null;
+        this.changed.clear();
+    }
+
+    /**
+     * Check whether this index can answer lookups for the info provider
+     * @param provider The info provider
+     * @return {@code true} if the index is active for this provider
+     */
+    public boolean isActive(final InfoProvider provider) {
+        return provider != null && this.infoProvider == provider;
+    }
+
+    /**
+     * @see org.apache.sling.installer.api.event.InstallationListener#onEvent(org.apache.sling.installer.api.event.InstallationEvent)
+     */
+    @Override
+    public void onEvent(final InstallationEvent event) {
+        if (event.getType() == InstallationEvent.TYPE.PROCESSED && event.getSource() instanceof TaskResource) {
+            final TaskResource rsrc = (TaskResource) event.getSource();
+            if (InstallableResource.TYPE_CONFIG.equals(rsrc.getType()) && rsrc.getEntityId() != null) {
+                this.changed.add(rsrc.getEntityId());
+            }
+        }
+    }
+
+    /**
+     * Get the merged default properties for an entity
+     * @param entityId The entity id
+     * @return The merged properties or {@code null}
+     */
+    public Dictionary<String, Object> get(final String entityId) {
+        Map<String, Entry> current = this.entries;
+        if (current == null || this.changed.contains(entityId)) {
+            synchronized (this) {
+                current = this.entries;
+                if (current == null) {
+                    // events up to here are covered by the scan
+                    this.changed.clear();
+                    current = this.build();
+                    this.entries = current;
+                } else if (this.changed.remove(entityId)) {
+                    this.update(current, entityId);
+                }
+            }
+        }
+        final Entry entry = current.get(entityId);
+        return entry == null ? null : entry.getMerged();
+    }
+
+    /**
+     * Build the index with a single pass over the installed resources
+     */
+    private Map<String, Entry> build() {
+        final Map<String, Entry> result = new ConcurrentHashMap<>();
+        final InfoProvider provider = this.infoProvider;
+        final List<String> schemes = Activator.MERGE_SCHEMES;
+        if (provider == null || schemes == null) {
+            return result;
+        }
+        final Set<String> seen = new HashSet<>();
+        for (final ResourceGroup group : provider.getInstallationState().getInstalledResources()) {
+            final String entityId = getEntityId(group);
+            // the first group containing an entity id wins
+            if (entityId != null && seen.add(entityId)) {
+                final List<Resource> sources = getSources(group, entityId, schemes);
+                if (!sources.isEmpty()) {
+                    result.put(entityId, new Entry(getSourceKey(sources), getDictionaries(sources)));
+                }
+            }
+        }
+        logger.debug("Built default properties index with {} entries", result.size());
+        return result;
+    }
+
+    /**
+     * Update the entry of a single entity. The merged dictionary is kept
+     * if the merge sources did not change.
+     */
+    private void update(final Map<String, Entry> current, final String entityId) {
+        final InfoProvider provider = this.infoProvider;
+        final List<String> schemes = Activator.MERGE_SCHEMES;
+        if (provider == null || schemes == null) {
+            return;
+        }
+        List<Resource> sources = Collections.emptyList();
+        for (final ResourceGroup group : provider.getInstallationState().getInstalledResources()) {
+            if (entityId.equals(getEntityId(group))) {
+                sources = getSources(group, entityId, schemes);
+                break;
+            }
+        }
+        if (sources.isEmpty()) {
+            current.remove(entityId);
+        } else {
+            final String sourceKey = getSourceKey(sources);
+            final Entry old = current.get(entityId);
+            if (old == null || sourceKey == null || !sourceKey.equals(old.sourceKey)) {
+                current.put(entityId, new Entry(sourceKey, getDictionaries(sources)));
+            }
+        }
+        logger.debug("Updated default properties of {}", entityId);
+    }
+
+    private static String getEntityId(final ResourceGroup group) {
+        final List<Resource> resources = group.getResources();
+        return resources.isEmpty() ? null : resources.get(0).getEntityId();
+    }
+
+    private static List<Resource> getSources(
+            final ResourceGroup group, final String entityId, final List<String> schemes) {
+        final List<Resource> sources = new ArrayList<>();
+        for (final Resource rsrc : group.getResources()) {
+            if (entityId.equals(rsrc.getEntityId()) && schemes.contains(rsrc.getScheme())) {
+                sources.add(rsrc);
+            }
+        }
+        return sources;
+    }
+
+    private static List<Dictionary<String, Object>> getDictionaries(final List<Resource> resources) {
+        final List<Dictionary<String, Object>> result = new ArrayList<>(resources.size());
+        for (final Resource rsrc : resources) {
+            result.add(rsrc.getDictionary());
+        }
+        return result;
+    }
+
+    /**
+     * Create a key identifying the merge sources of an entity.
+     * @param resources The merge sources
+     * @return The key or {@code null} if the sources can't be identified
+     */
+    private static String getSourceKey(final List<Resource> resources) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Resource rsrc : resources) {
+            if (rsrc.getURL() == null || rsrc.getDigest() == null) {
+                return null;
+            }
+            sb.append(rsrc.getURL()).append('#').append(rsrc.getDigest()).append('\n');
+        }
+        return sb.toString();
+    }
+}
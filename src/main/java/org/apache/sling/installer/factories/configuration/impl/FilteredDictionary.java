@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.function.BiPredicate;
+
+/**
+ * Read only view on a dictionary hiding some of its entries.
+ *
+ * The entries are not copied, {@link #get(Object)} checks the entry of the
+ * delegate against the filter. The visible keys are collected once, when the
+ * keys, the values or the size are requested, therefore the delegate must not
+ * be modified while the view is used. Use {@link CompactDictionary#copyOf(Dictionary)}
+ * if a modifiable copy is needed.
+ */
+public final class FilteredDictionary extends Dictionary<String, Object> {
+
+    /** The delegate. */
+    private final Dictionary<String, Object> delegate;
+
+    /** Returns {@code true} for hidden entries. */
+    private final BiPredicate<String, Object> hidden;
+
+    /** The visible keys or {@code null} */
+    private volatile String[] keys;
+
+    /**
+     * Create a new view
+     * @param delegate The delegate
+     * @param hidden Returns {@code true} for entries which are hidden
+     */
+    public FilteredDictionary(final Dictionary<String, Object> delegate, final BiPredicate<String, Object> hidden) {
+        this.delegate = delegate;
+        this.hidden = hidden;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final Object value = this.delegate.get(key);
+        if (value == null || this.hidden.test((String) key, value)) {
+            return null;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return this.getKeys().length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.getKeys().length == 0;
+    }
+
+    @Override
+    public Enumeration<String> keys() {
+        final String[] k = this.getKeys();
+        return new ArrayEnumeration<String>(k.length) {
+            @Override
+            String get(final int index) {
+                return k[index];
+            }
+        };
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        final String[] k = this.getKeys();
+        return new ArrayEnumeration<Object>(k.length) {
+            @Override
+            Object get(final int index) {
+                return delegate.get(k[index]);
+            }
+        };
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        throw new UnsupportedOperationException("Filtered dictionary is read only");
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        throw new UnsupportedOperationException("Filtered dictionary is read only");
+    }
+
+    @Override
+    public String toString() {
+        return CompactDictionary.copyOf(this).toString();
+    }
+
+    private String[] getKeys() {
+        String[] result = this.keys;
+        if (result == null) {
+            result = new String[this.delegate.size()];
+            int pos = 0;
+            final Enumeration<String> e = this.delegate.keys();
+            while (e.hasMoreElements()) {
+                final String key = e.nextElement();
+                final Object value = this.delegate.get(key);
+                if (value != null && !this.hidden.test(key, value)) {
+                    if (pos == result.length) {
+                        result = Arrays.copyOf(result, result.length * 2 + 1);
+                    }
+                    result[pos++] = key;
+                }
+            }
+            if (pos != result.length) {
+                result = Arrays.copyOf(result, pos);
+            }
+            this.keys = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Output stream decoding UTF-8 bytes and writing them HTML escaped into a writer.
+ *
+ * The bytes are decoded in fixed size chunks, so serializer output can be streamed into
+ * an HTML page without holding it in memory. Closing the stream does not close the writer.
+ */
+class HtmlEscapingOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    private boolean closed;
+
+    HtmlEscapingOutputStream(@NotNull final Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.ensureOpen();
+        if (!this.bytes.hasRemaining()) {
+            this.decode(false);
+        }
+        this.bytes.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        this.ensureOpen();
+        while (len > 0) {
+            if (!this.bytes.hasRemaining()) {
+                this.decode(false);
+            }
+            final int n = Math.min(len, this.bytes.remaining());
+            this.bytes.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!this.closed) {
+            // incomplete characters stay in the buffer
+            this.decode(false);
+            this.writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.decode(true);
+            this.decoder.flush(this.chars);
+            this.drain();
+            this.writer.flush();
+            this.closed = true;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void decode(final boolean endOfInput) throws IOException {
+        this.bytes.flip();
+        while (this.decoder.decode(this.bytes, this.chars, endOfInput).isOverflow()) {
+            this.drain();
+        }
+        this.drain();
+        this.bytes.compact();
+    }
+
+    /**
+     * Write the decoded characters escaped into the writer
+     */
+    private void drain() throws IOException {
+        final char[] buffer = this.chars.array();
+        final int end = this.chars.position();
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            final String replacement;
+            switch (buffer[i]) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null) {
+                this.writer.write(buffer, start, i - start);
+                this.writer.write(replacement);
+                start = i + 1;
+            }
+        }
+        this.writer.write(buffer, start, end - start);
+        this.chars.clear();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+/**
+ * Facade for the JDK Flight Recorder events of the configuration installer.
+ *
+ * The {@code jdk.jfr} package is imported optionally, if it is not available
+ * all methods are no-ops. If it is available, events are only created while
+ * a recording has them enabled.
+ */
+final class InstallerEvents {
+
+    /** The event types */
+    enum Type {
+        /** Execution of an install task */
+        INSTALL,
+        /** Execution of a remove task */
+        REMOVE,
+        /** Handling of a configuration event */
+        CONFIGURATION_EVENT,
+        /** Lookup of a configuration in configuration admin */
+        CM_LOOKUP,
+        /** Merge of the dictionaries of an install task */
+        MERGE,
+        /** Lookup of a metatype definition */
+        METATYPE_LOOKUP
+    }
+
+    /** Whether the flight recorder classes are available */
+    private static final boolean AVAILABLE = isAvailable();
+
+    private InstallerEvents() {
+        // static methods only
+    }
+
+    private static boolean isAvailable() {
+        try {
+            return InstallerJfrEvents.isAvailable();
+        } catch (final LinkageError e) {
+            // jdk.jfr is not imported
+            return false;
+        }
+    }
+
+    /**
+     * Begin an event
+     * @param type The type of the event
+     * @return The event or {@code null} if the event is not recorded
+     */
+    static Object begin(final Type type) {
+        return AVAILABLE ? InstallerJfrEvents.begin(type) : null;
+    }
+
+    /**
+     * End and commit an event
+     * @param event The event returned by {@link #begin(Type)}, might be {@code null}
+     * @param pid The pid
+     * @param factoryPid The factory pid or {@code null}
+     * @param outcome The outcome
+     */
+    static void end(final Object event, final String pid, final String factoryPid, final String outcome) {
+        if (event != null) {
+            InstallerJfrEvents.end(event, pid, factoryPid, outcome);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder events. This class must only be used
+ * through {@link InstallerEvents} as {@code jdk.jfr} might not be available.
+ */
+final class InstallerJfrEvents {
+
+    private static final String PREFIX = "org.apache.sling.installer.configuration.";
+
+    @Category({"Apache Sling", "Installer", "Configuration"})
+    abstract static class ConfigurationEvent extends Event {
+
+        @Label("PID")
+        String pid;
+
+        @Label("Factory PID")
+        String factoryPid;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name(PREFIX + "Install")
+    @Label("Install Configuration")
+    @Description("Execution of a configuration install task")
+    static final class InstallEvent extends ConfigurationEvent {}
+
+    @Name(PREFIX + "Remove")
+    @Label("Remove Configuration")
+    @Description("Execution of a configuration remove task")
+    static final class RemoveEvent extends ConfigurationEvent {}
+
+    @Name(PREFIX + "ConfigurationEvent")
+    @Label("Configuration Event")
+    @Description("Handling of a configuration admin event")
+    static final class ConfigurationEventEvent extends ConfigurationEvent {}
+
+    @Name(PREFIX + "Lookup")
+    @Label("Configuration Lookup")
+    @Description("Lookup of a configuration in configuration admin")
+    static final class LookupEvent extends ConfigurationEvent {}
+
+    @Name(PREFIX + "Merge")
+    @Label("Merge Configuration")
+    @Description("Merge of the dictionaries of the resources of a configuration")
+    static final class MergeEvent extends ConfigurationEvent {}
+
+    @Name(PREFIX + "MetatypeLookup")
+    @Label("Metatype Lookup")
+    @Description("Lookup of the metatype definition of a configuration")
+    static final class MetatypeLookupEvent extends ConfigurationEvent {}
+
+    /** The event types by ordinal of {@link InstallerEvents.Type}, to check whether an event is enabled. */
+    private static final EventType[] TYPES = {
+        EventType.getEventType(InstallEvent.class),
+        EventType.getEventType(RemoveEvent.class),
+        EventType.getEventType(ConfigurationEventEvent.class),
+        EventType.getEventType(LookupEvent.class),
+        EventType.getEventType(MergeEvent.class),
+        EventType.getEventType(MetatypeLookupEvent.class)
+    };
+
+    private InstallerJfrEvents() {
+        // static methods only
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static Object begin(final InstallerEvents.Type type) {
+        // check the type first to not allocate events while no recording has them enabled
+        if (!TYPES[type.ordinal()].isEnabled()) {
+            return null;
+        }
+        final ConfigurationEvent event;
+        switch (type) {
+            case INSTALL:
+                event = new InstallEvent();
+                break;
+            case REMOVE:
+                event = new RemoveEvent();
+                break;
+            case CONFIGURATION_EVENT:
+                event = new ConfigurationEventEvent();
+                break;
+            case CM_LOOKUP:
+                event = new LookupEvent();
+                break;
+            case MERGE:
+                event = new MergeEvent();
+                break;
+            default:
+                event = new MetatypeLookupEvent();
+        }
+        event.begin();
+        return event;
+    }
+
+    static void end(final Object obj, final String pid, final String factoryPid, final String outcome) {
+        final ConfigurationEvent event = (ConfigurationEvent) obj;
+        event.end();
+        if (event.shouldCommit()) {
+            event.pid = pid;
+            event.factoryPid = factoryPid;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * Immutable dictionary merging several layers without copying them.
+ *
+ * The value of a key is taken from the first layer containing the key, the
+ * first layer therefore overrides all others. Values are only resolved
+ * when they are requested and the layers are shared instead of copied.
+ * The layers must not be modified while this dictionary is used.
+ *
+ * The merged keys are only collected when the keys, the values or the size
+ * are requested. Use {@link #flatten()} to get a copy of the merged values,
+ * for example to update a configuration.
+ */
+public final class LayeredDictionary extends Dictionary<String, Object> {
+
+    /** The layers, the first one overrides all others. */
+    private final Dictionary<String, Object>[] layers;
+
+    /** The merged keys or {@code null} */
+    private volatile String[] keys;
+
+    @SuppressWarnings("unchecked")
+    public LayeredDictionary(final List<Dictionary<String, Object>> layers) {
+        this.layers = layers.toArray(new Dictionary[layers.size()]);
+    }
+
+    /**
+     * Create a merged dictionary for the layers
+     * @param layers The layers, the first one overrides all others
+     * @return The only layer if there is just one, a layered dictionary otherwise
+     */
+    public static Dictionary<String, Object> of(final List<Dictionary<String, Object>> layers) {
+        if (layers.size() == 1) {
+            return layers.get(0);
+        }
+        return new LayeredDictionary(layers);
+    }
+
+    @Override
+    public Object get(final Object key) {
+        for (final Dictionary<String, Object> layer : this.layers) {
+            final Object value = layer.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return this.getKeys().length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (final Dictionary<String, Object> layer : this.layers) {
+            if (!layer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Enumeration<String> keys() {
+        final String[] k = this.getKeys();
+        return new ArrayEnumeration<String>(k.length) {
+            @Override
+            String get(final int index) {
+                return k[index];
+            }
+        };
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        final String[] k = this.getKeys();
+        return new ArrayEnumeration<Object>(k.length) {
+            @Override
+            Object get(final int index) {
+                return LayeredDictionary.this.get(k[index]);
+            }
+        };
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        throw new UnsupportedOperationException("Layered dictionary is immutable");
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        throw new UnsupportedOperationException("Layered dictionary is immutable");
+    }
+
+    /**
+     * Copy the merged values into a new dictionary
+     * @return A new modifiable dictionary
+     */
+    public Dictionary<String, Object> flatten() {
+        final String[] k = this.getKeys();
+        final Dictionary<String, Object> result = new Hashtable<>(k.length * 4 / 3 + 1);
+        for (final String key : k) {
+            result.put(key, this.get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return this.flatten().toString();
+    }
+
+    /**
+     * Collect the keys of all layers. A key of a layer is only added if
+     * none of the layers before contains it, which avoids a separate set.
+     * @return The keys
+     */
+    private String[] getKeys() {
+        String[] result = this.keys;
+        if (result == null) {
+            int count = 0;
+            for (final Dictionary<String, Object> layer : this.layers) {
+                count += layer.size();
+            }
+            result = new String[count];
+            int pos = 0;
+            for (int i = 0; i < this.layers.length; i++) {
+                final Enumeration<String> e = this.layers[i].keys();
+                while (e.hasMoreElements()) {
+                    final String key = e.nextElement();
+                    if (!this.isContainedBefore(i, key)) {
+                        result[pos++] = key;
+                    }
+                }
+            }
+            if (pos != result.length) {
+                result = Arrays.copyOf(result, pos);
+            }
+            this.keys = result;
+        }
+        return result;
+    }
+
+    private boolean isContainedBefore(final int layer, final String key) {
+        for (int i = 0; i < layer; i++) {
+            if (this.layers[i].get(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -20,38 +20,141 @@ package org.apache.sling.installer.factories.configuration.impl;
 
 import java.util.Arrays;
 import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeProvider;
 import org.osgi.service.metatype.MetaTypeService;
 import org.osgi.service.metatype.ObjectClassDefinition;
 import org.osgi.util.converter.Converters;
 
-public class MetatypeHandler {
+/**
+ * Handler removing default values of a configuration based on the metatype information.
+ *
+ * Once opened, the handler keeps an index of the bundles providing the metatype
+ * for a pid. The index is built on first use and afterwards only updated for the
+ * bundles which changed or which registered or unregistered a metatype provider.
+ * If the handler is not opened, all bundles are searched for each lookup.
+ */
+public class MetatypeHandler implements BundleListener, ServiceListener {
 
     private final MetaTypeService srv;
 
     private final BundleContext bundleContext;
 
+    /**
+     * Providing bundle ids by pid, sorted by bundle id. If several bundles provide
+     * a pid, the first one with a definition wins, like for a search of all bundles.
+     */
+    private final Map<String, Set<Long>> providers = new HashMap<>();
+
+    /** Pids by bundle id. */
+    private final Map<Long, Set<String>> pidsByBundle = new HashMap<>();
+
+    /** Cached object class definitions by pid. */
+    private final Map<String, ObjectClassDefinition> definitions = new HashMap<>();
+
+    /** Bundles which need to be indexed again. */
+    private final Set<Long> changedBundles = new HashSet<>();
+
+    /** Whether the index has been built. */
+    private boolean indexed;
+
+    /** Whether the handler is open and tracks changes. */
+    private volatile boolean open;
+
     public MetatypeHandler(final MetaTypeService mts, final BundleContext bundleContext) {
         this.srv = mts;
         this.bundleContext = bundleContext;
     }
 
+    /**
+     * Start tracking bundle and metatype provider changes and use the index for lookups
+     */
+    public void open() {
+        this.bundleContext.addBundleListener(this);
+        try {
+            this.bundleContext.addServiceListener(
+                    this, "(" + Constants.OBJECTCLASS + "=" + MetaTypeProvider.class.getName() + ")");
+        } catch (final InvalidSyntaxException ise) {
+            // this can never happen as the filter is constant
+        }
+        this.open = true;
+    }
+
+    /**
+     * Stop tracking changes and clear the index
+     */
+    public void close() {
+        this.open = false;
+        this.bundleContext.removeServiceListener(this);
+        this.bundleContext.removeBundleListener(this);
+        synchronized (this) {
+            this.clear();
+        }
+    }
+
+    MetaTypeService getMetaTypeService() {
+        return this.srv;
+    }
+
+    @Override
+    public void bundleChanged(final BundleEvent event) {
+        this.changed(event.getBundle());
+    }
+
+    @Override
+    public void serviceChanged(final ServiceEvent event) {
+        final ServiceReference<?> ref = event.getServiceReference();
+        this.changed(ref.getBundle());
+    }
+
+    private synchronized void changed(final Bundle bundle) {
+        if (this.indexed) {
+            if (bundle == null) {
+                this.clear();
+            } else {
+                this.changedBundles.add(bundle.getBundleId());
+            }
+        }
+    }
+
+    private void clear() {
+        this.indexed = false;
+        this.providers.clear();
+        this.pidsByBundle.clear();
+        this.definitions.clear();
+        this.changedBundles.clear();
+    }
+
     public void updateConfiguration(
             final String factoryPid,
             final String pid,
             final Dictionary<String, Object> props,
             final Dictionary<String, Object> defaultProps) {
         // search metatype
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.METATYPE_LOOKUP);
         final ObjectClassDefinition ocd;
         if (factoryPid != null) {
             ocd = this.getObjectClassDefinition(factoryPid);
         } else {
             ocd = this.getObjectClassDefinition(pid);
         }
+        InstallerEvents.end(event, pid, factoryPid, ocd != null ? "found" : "notFound");
 
         if (ocd != null) {
             for (final AttributeDefinition ad : ocd.getAttributeDefinitions(ObjectClassDefinition.ALL)) {
@@ -75,23 +178,109 @@ public class MetatypeHandler {
     }
 
     private ObjectClassDefinition getObjectClassDefinition(final String pid) {
-        for (final Bundle b : this.bundleContext.getBundles()) {
-            try {
-                final MetaTypeInformation mti = this.srv.getMetaTypeInformation(b);
-                if (mti != null) {
-                    final ObjectClassDefinition ocd = mti.getObjectClassDefinition(pid, null);
-                    ;
-                    if (ocd != null) {
-                        return ocd;
+        if (!this.open) {
+            for (final Bundle b : this.bundleContext.getBundles()) {
+                final ObjectClassDefinition ocd = getObjectClassDefinition(b, pid);
+                if (ocd != null) {
+                    return ocd;
+                }
+            }
+            return null;
+        }
+        synchronized (this) {
+            this.updateIndex();
+            ObjectClassDefinition ocd = this.definitions.get(pid);
+            if (ocd == null) {
+                final Set<Long> bundleIds = this.providers.get(pid);
+                if (bundleIds != null) {
+                    for (final Long bundleId : bundleIds) {
+                        final Bundle b = this.bundleContext.getBundle(bundleId);
+                        ocd = b == null ? null : getObjectClassDefinition(b, pid);
+                        if (ocd != null) {
+                            this.definitions.put(pid, ocd);
+                            break;
+                        }
                     }
                 }
-            } catch (final IllegalArgumentException iae) {
-                // ignore
             }
+            return ocd;
+        }
+    }
+
+    private ObjectClassDefinition getObjectClassDefinition(final Bundle b, final String pid) {
+        try {
+            final MetaTypeInformation mti = this.srv.getMetaTypeInformation(b);
+            if (mti != null) {
+                return mti.getObjectClassDefinition(pid, null);
+            }
+        } catch (final IllegalArgumentException iae) {
+            // ignore
         }
         return null;
     }
 
+    /**
+     * Build the index or update it for the changed bundles
+     */
+    private void updateIndex() {
+        if (!this.indexed) {
+            for (final Bundle b : this.bundleContext.getBundles()) {
+                this.index(b);
+            }
+            this.indexed = true;
+        } else if (!this.changedBundles.isEmpty()) {
+            for (final Long bundleId : this.changedBundles) {
+                final Set<String> pids = this.pidsByBundle.remove(bundleId);
+                if (pids != null) {
+                    for (final String pid : pids) {
+                        this.definitions.remove(pid);
+                        final Set<Long> bundleIds = this.providers.get(pid);
+                        if (bundleIds != null) {
+                            bundleIds.remove(bundleId);
+                            if (bundleIds.isEmpty()) {
+                                this.providers.remove(pid);
+                            }
+                        }
+                    }
+                }
+                final Bundle b = this.bundleContext.getBundle(bundleId);
+                if (b != null && b.getState() != Bundle.UNINSTALLED) {
+                    this.index(b);
+                }
+            }
+            this.changedBundles.clear();
+        }
+    }
+
+    private void index(final Bundle b) {
+        try {
+            final MetaTypeInformation mti = this.srv.getMetaTypeInformation(b);
+            if (mti != null) {
+                final Set<String> pids = new HashSet<>();
+                addAll(pids, mti.getPids());
+                addAll(pids, mti.getFactoryPids());
+                if (!pids.isEmpty()) {
+                    this.pidsByBundle.put(b.getBundleId(), pids);
+                    for (final String pid : pids) {
+                        this.providers
+                                .computeIfAbsent(pid, key -> new TreeSet<>())
+                                .add(b.getBundleId());
+                        // a cached definition might be provided by a bundle with a higher id
+                        this.definitions.remove(pid);
+                    }
+                }
+            }
+        } catch (final IllegalArgumentException iae) {
+            // ignore
+        }
+    }
+
+    private static void addAll(final Set<String> set, final String[] values) {
+        if (values != null) {
+            set.addAll(Arrays.asList(values));
+        }
+    }
+
     boolean shouldSet(final AttributeDefinition ad, final String value) {
         if (value.isEmpty() && ad.getDefaultValue() == null) {
             return false;
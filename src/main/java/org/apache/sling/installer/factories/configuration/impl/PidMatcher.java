@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matcher for pids against a list of patterns.
+ *
+ * A pattern is either a pid or a prefix followed by {@code *}, which
+ * matches all pids starting with the prefix. Matching does not use
+ * regular expressions as it runs for every configuration event.
+ */
+final class PidMatcher {
+
+    /** The pids matched exactly. */
+    private final Set<String> pids = new HashSet<>();
+
+    /** The prefixes. */
+    private final String[] prefixes;
+
+    private PidMatcher(final String[] patterns) {
+        final List<String> prefixList = new ArrayList<>();
+        for (final String p : patterns) {
+            final String pattern = p.trim();
+            if (pattern.endsWith("*")) {
+                prefixList.add(pattern.substring(0, pattern.length() - 1));
+            } else if (!pattern.isEmpty()) {
+                this.pids.add(pattern);
+            }
+        }
+        this.prefixes = prefixList.toArray(new String[prefixList.size()]);
+    }
+
+    /**
+     * Create a matcher for a comma separated list of patterns
+     * @param value The patterns
+     * @return The matcher or {@code null} if there are no patterns
+     */
+    static PidMatcher parse(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final PidMatcher matcher = new PidMatcher(value.split(","));
+        if (matcher.pids.isEmpty() && matcher.prefixes.length == 0) {
+            return null;
+        }
+        return matcher;
+    }
+
+    /**
+     * Check whether a pid matches one of the patterns
+     * @param pid The pid
+     * @return {@code true} if the pid matches
+     */
+    boolean matches(final String pid) {
+        if (pid == null) {
+            return false;
+        }
+        if (this.pids.contains(pid)) {
+            return true;
+        }
+        for (final String prefix : this.prefixes) {
+            if (pid.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
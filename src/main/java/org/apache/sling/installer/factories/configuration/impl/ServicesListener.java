@@ -18,10 +18,15 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.felix.inventory.InventoryPrinter;
 import org.apache.sling.installer.api.ResourceChangeListener;
+import org.apache.sling.installer.api.event.InstallationListener;
 import org.apache.sling.installer.api.info.InfoProvider;
+import org.apache.sling.installer.factories.configuration.ConfigurationInstallerMetrics;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -58,9 +63,18 @@ public class ServicesListener {
     /** Registration the service. */
     private volatile ServiceRegistration<?> configTaskCreatorRegistration;
 
+    /** Registration for the default properties index. */
+    private volatile ServiceRegistration<?> defaultPropertiesIndexRegistration;
+
     /** Registration for the webconsole support. */
     private volatile ServiceRegistration<?> webconsoleRegistration;
 
+    /** Registration for the metrics. */
+    private final ServiceRegistration<?> metricsRegistration;
+
+    /** Registration for the metrics inventory printer. */
+    private final ServiceRegistration<?> metricsPrinterRegistration;
+
     private volatile ConfigTaskCreator configTaskCreator;
 
     private final AtomicBoolean active = new AtomicBoolean(false);
@@ -73,6 +87,32 @@ public class ServicesListener {
         this.infoServiceListener.start();
         this.changeHandlerListener.start();
         this.configAdminListener.start();
+        final Dictionary<String, Object> metricsProps = new Hashtable<>();
+        metricsProps.put(Constants.SERVICE_VENDOR, VENDOR);
+        this.metricsRegistration = bundleContext.registerService(
+                ConfigurationInstallerMetrics.class, ConfigurationMetrics.SHARED, metricsProps);
+        final Dictionary<String, Object> printerProps = new Hashtable<>();
+        printerProps.put(Constants.SERVICE_VENDOR, VENDOR);
+        printerProps.put(InventoryPrinter.NAME, ConfigurationMetricsPrinter.NAME);
+        printerProps.put(InventoryPrinter.TITLE, ConfigurationMetricsPrinter.TITLE);
+        printerProps.put(InventoryPrinter.FORMAT, new String[] {"TEXT", "JSON"});
+        // the inventory api is optional, register a factory to avoid loading the printer class
+        this.metricsPrinterRegistration = bundleContext.registerService(
+                "org.apache.felix.inventory.InventoryPrinter",
+                new ServiceFactory<Object>() {
+
+                    @Override
+                    public Object getService(final Bundle bundle, final ServiceRegistration<Object> registration) {
+                        return new ConfigurationMetricsPrinter(ConfigurationMetrics.SHARED);
+                    }
+
+                    @Override
+                    public void ungetService(
+                            final Bundle bundle, final ServiceRegistration<Object> registration, final Object service) {
+                        // nothing to do
+                    }
+                },
+                printerProps);
     }
 
     public synchronized void notifyChange() {
@@ -86,9 +126,13 @@ public class ServicesListener {
                 active.set(true);
                 // start and register osgi installer service
                 this.configTaskCreator = new ConfigTaskCreator(listener, configAdmin, infoProvider);
+                this.configTaskCreator.activate();
                 final ConfigUpdateHandler handler = new ConfigUpdateHandler(configAdmin, this);
                 configTaskCreatorRegistration = handler.register(this.bundleContext);
                 if (Activator.MERGE_SCHEMES != null) {
+                    DefaultPropertiesIndex.SHARED.activate(infoProvider);
+                    this.defaultPropertiesIndexRegistration = this.bundleContext.registerService(
+                            InstallationListener.class, DefaultPropertiesIndex.SHARED, null);
                     this.webconsoleRegistration = this.bundleContext.registerService(
                             "org.apache.felix.webconsole.spi.ConfigurationHandler",
                             new ServiceFactory<Object>() {
@@ -122,11 +166,19 @@ public class ServicesListener {
             this.webconsoleRegistration.unregister();
             this.webconsoleRegistration = null;
         }
+        if (this.defaultPropertiesIndexRegistration != null) {
+            this.defaultPropertiesIndexRegistration.unregister();
+            this.defaultPropertiesIndexRegistration = null;
+            DefaultPropertiesIndex.SHARED.deactivate();
+        }
         if (this.configTaskCreatorRegistration != null) {
             this.configTaskCreatorRegistration.unregister();
             this.configTaskCreatorRegistration = null;
         }
-        this.configTaskCreator = null;
+        if (this.configTaskCreator != null) {
+            this.configTaskCreator.deactivate();
+            this.configTaskCreator = null;
+        }
     }
 
     public boolean isActive() {
@@ -148,6 +200,12 @@ public class ServicesListener {
         this.changeHandlerListener.deactivate();
         this.configAdminListener.deactivate();
         this.stop();
+        if (this.metricsPrinterRegistration != null) {
+            this.metricsPrinterRegistration.unregister();
+        }
+        if (this.metricsRegistration != null) {
+            this.metricsRegistration.unregister();
+        }
     }
 
     protected final class Listener implements ServiceListener {
@@ -18,20 +18,18 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Objects;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
  * A sorted dictionary is a view on an existing {@link Dictionary} that is sorted by its keys
  * in natural ordering.
  * This is just a view on top of the delegate dictionary. All write operations modify
  * the underlying delegate dictionary.
+ * The sorted keys are cached until keys are added or removed through this view,
+ * therefore the delegate must not be modified directly while the view is used.
  * @param <K> the type of the keys
  * @param <V> the type of the values
  */
@@ -39,6 +37,15 @@ public class SortedDictionary<K, V> extends Dictionary<K, V> {
 
     private final Dictionary<K, V> delegate;
 
+    /** Modification counter, incremented whenever keys are added or removed through this view */
+    private int modCount;
+
+    /** The sorted keys or {@code null} */
+    private Object[] sortedKeys;
+
+    /** The modification counter the sorted keys have been created for */
+    private int sortedModCount;
+
     public SortedDictionary(Dictionary<K, V> delegate) {
         this.delegate = delegate;
     }
@@ -57,18 +64,25 @@ public class SortedDictionary<K, V> extends Dictionary<K, V> {
     }
 
     public Enumeration<K> keys() {
-        return sortedEnumeration(delegate.keys());
+        final Object[] keys = getSortedKeys();
+        return new ArrayEnumeration<K>(keys.length) {
+            @SuppressWarnings("unchecked")
+            @Override
+            K get(final int index) {
+                return (K) keys[index];
+            }
+        };
     }
 
     public Enumeration<V> elements() {
         // this needs to be sorted by keys
-        Enumeration<K> sortedKeys = keys();
-        Collection<V> sortedValues = new ArrayList<>();
-        while (sortedKeys.hasMoreElements()) {
-            K key = sortedKeys.nextElement();
-            sortedValues.add(delegate.get(key));
-        }
-        return Collections.enumeration(sortedValues);
+        final Object[] keys = getSortedKeys();
+        return new ArrayEnumeration<V>(keys.length) {
+            @Override
+            V get(final int index) {
+                return delegate.get(keys[index]);
+            }
+        };
     }
 
     public V get(Object key) {
@@ -85,11 +99,19 @@ public class SortedDictionary<K, V> extends Dictionary<K, V> {
     }
 
     public V put(K key, V value) {
-        return delegate.put(key, value);
+        final V old = delegate.put(key, value);
+        if (old == null) {
+            modCount++;
+        }
+        return old;
     }
 
     public V remove(Object key) {
-        return delegate.remove(key);
+        final V old = delegate.remove(key);
+        if (old != null) {
+            modCount++;
+        }
+        return old;
     }
 
     public String toString() {
@@ -97,17 +119,30 @@ public class SortedDictionary<K, V> extends Dictionary<K, V> {
     }
 
     /**
-     * Returns an sorted enumeration of the given enumeration, sorted according to the natural ordering of the elements.
-     * For Strings, this is the lexicographic order.
+     * Get the keys sorted according to their natural ordering, for Strings this is the lexicographic order.
+     * The keys are only sorted again after a modification.
      *
-     * @param enumeration the enumeration to sort
-     * @return the sorted enumeration
+     * @return the sorted keys, must not be modified
      */
-    private static <T> Enumeration<T> sortedEnumeration(Enumeration<T> enumeration) {
-        SortedSet<T> sortedSet = new TreeSet<>();
-        while (enumeration.hasMoreElements()) {
-            sortedSet.add(enumeration.nextElement());
+    private Object[] getSortedKeys() {
+        Object[] keys = this.sortedKeys;
+        if (keys == null || this.sortedModCount != this.modCount) {
+            keys = new Object[delegate.size()];
+            int i = 0;
+            final Enumeration<K> e = delegate.keys();
+            while (e.hasMoreElements()) {
+                if (i == keys.length) {
+                    keys = Arrays.copyOf(keys, keys.length * 2 + 1);
+                }
+                keys[i++] = e.nextElement();
+            }
+            if (i != keys.length) {
+                keys = Arrays.copyOf(keys, i);
+            }
+            Arrays.sort(keys);
+            this.sortedKeys = keys;
+            this.sortedModCount = this.modCount;
         }
-        return Collections.enumeration(sortedSet);
+        return keys;
     }
 }
@@ -36,6 +36,9 @@ public class WebconsoleConfigurationHandler implements ConfigurationHandler {
 
     private final BundleContext bundleContext;
 
+    /** Metatype handler for the current metatype service. */
+    private MetatypeHandler metatypeHandler;
+
     public WebconsoleConfigurationHandler(final BundleContext context, final InfoProvider infoProvider) {
         this.infoProvider = infoProvider;
         this.bundleContext = context;
@@ -45,6 +48,26 @@ public class WebconsoleConfigurationHandler implements ConfigurationHandler {
 
     public void deactivate() {
         this.metatypeTracker.close();
+        synchronized (this) {
+            if (this.metatypeHandler != null) {
+                this.metatypeHandler.close();
+                this.metatypeHandler = null;
+            }
+        }
+    }
+
+    /**
+     * Get the metatype handler, the handler is kept as long as the metatype service does not change
+     */
+    private synchronized MetatypeHandler getMetatypeHandler(final MetaTypeService mts) {
+        if (this.metatypeHandler == null || this.metatypeHandler.getMetaTypeService() != mts) {
+            if (this.metatypeHandler != null) {
+                this.metatypeHandler.close();
+            }
+            this.metatypeHandler = new MetatypeHandler(mts, this.bundleContext);
+            this.metatypeHandler.open();
+        }
+        return this.metatypeHandler;
     }
 
     @Override
@@ -69,7 +92,7 @@ public class WebconsoleConfigurationHandler implements ConfigurationHandler {
         final MetaTypeService mts = this.metatypeTracker.getService();
         if (mts != null) {
             final Dictionary<String, Object> defaultProps = ConfigTaskCreator.getDefaultProperties(infoProvider, pid);
-            final MetatypeHandler mt = new MetatypeHandler(mts, this.bundleContext);
+            final MetatypeHandler mt = this.getMetatypeHandler(mts);
             mt.updateConfiguration(factoryPid, pid, props, defaultProps);
         }
     }
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactDictionaryTest {
+
+    @Test
+    void testSameAsMap() {
+        final Random random = new Random(42);
+        final CompactDictionary dict = new CompactDictionary();
+        final Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            final String key = "key" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(map.remove(key), dict.remove(key));
+            } else {
+                assertEquals(map.put(key, i), dict.put(key, i));
+            }
+            assertEquals(map.size(), dict.size());
+        }
+        for (final Map.Entry<String, Object> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), dict.get(entry.getKey()));
+        }
+        assertEquals(map.keySet(), new HashSet<>(Collections.list(dict.keys())));
+    }
+
+    @Test
+    void testRemoveWhileEnumerating() {
+        final Hashtable<String, Object> props = new Hashtable<>();
+        for (int i = 0; i < 100; i++) {
+            props.put("key" + i, i);
+        }
+        final CompactDictionary dict = CompactDictionary.copyOf(props);
+        final Enumeration<String> keys = dict.keys();
+        int count = 0;
+        while (keys.hasMoreElements()) {
+            final String key = keys.nextElement();
+            if ((Integer) dict.get(key) % 2 == 0) {
+                dict.remove(key);
+            }
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(50, dict.size());
+        assertNull(dict.get("key0"));
+        assertEquals(1, dict.get("key1"));
+    }
+
+    @Test
+    void testNullsAndSerialization() throws Exception {
+        final CompactDictionary dict = new CompactDictionary(2);
+        assertThrows(NullPointerException.class, () -> dict.put(null, "a"));
+        assertThrows(NullPointerException.class, () -> dict.put("a", null));
+        assertTrue(dict.isEmpty());
+        dict.put("a", new String[] {"b"});
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(dict);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            final CompactDictionary copy = (CompactDictionary) ois.readObject();
+            assertEquals(1, copy.size());
+            assertEquals("b", ((String[]) copy.get("a"))[0]);
+        }
+    }
+}
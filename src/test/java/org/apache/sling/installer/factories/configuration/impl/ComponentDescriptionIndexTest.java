@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComponentDescriptionIndexTest {
+
+    private static ComponentDescriptionDTO dto(final Map<String, Object> properties, final String... pids) {
+        final ComponentDescriptionDTO dto = new ComponentDescriptionDTO();
+        dto.configurationPid = pids;
+        dto.properties = properties;
+        return dto;
+    }
+
+    @Test
+    void testDefaultValues() {
+        final ComponentDescriptionDTO a = dto(Map.of("same", "1", "different", "a", "single", "x"), "pid", "other");
+        final ComponentDescriptionDTO b = dto(Map.of("same", "1", "different", "b"), "pid");
+        final ComponentDescriptionIndex index = new ComponentDescriptionIndex(List.of(a, b), 5L);
+
+        final ComponentDescriptionIndex.Entry entry = index.get("pid");
+        assertEquals(2, entry.getDescriptions().size());
+        assertEquals("1", entry.getDefaultValue("same"));
+        assertEquals("x", entry.getDefaultValue("single"));
+        assertNull(entry.getDefaultValue("different"));
+        assertNull(entry.getDefaultValue("unknown"));
+
+        assertEquals("a", index.get("other").getDefaultValue("different"));
+        assertNull(index.get("unknown"));
+    }
+
+    @Test
+    void testIsCurrent() {
+        final ComponentDescriptionIndex index = new ComponentDescriptionIndex(List.of(), 5L);
+        assertTrue(index.isCurrent(5L));
+        assertFalse(index.isCurrent(6L));
+        assertFalse(index.isCurrent(null));
+        assertFalse(new ComponentDescriptionIndex(List.of(), null).isCurrent(null));
+    }
+}
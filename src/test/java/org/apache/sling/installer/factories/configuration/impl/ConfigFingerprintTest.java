@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.Configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigFingerprintTest {
+
+    @Test
+    void testSameDataHasSameFingerprint() {
+        final Dictionary<String, Object> a = new Hashtable<>();
+        final Dictionary<String, Object> b = new Hashtable<>();
+        a.put("a", 1);
+        a.put("b", new int[] {1, 2});
+        a.put("c", Arrays.asList("x", "y"));
+        a.put("d", true);
+        a.put(Constants.SERVICE_PID, "pid");
+        b.put("d", "true");
+        b.put("c", "[x, y]");
+        b.put("b", new String[] {"1", "2"});
+        b.put("a", "1");
+        assertTrue(ConfigUtil.isSameData(a, b));
+        assertEquals(ConfigFingerprint.compute(a), ConfigFingerprint.compute(b));
+    }
+
+    @Test
+    void testDifferentDataHasDifferentFingerprint() {
+        final Dictionary<String, Object> a = new Hashtable<>();
+        a.put("a", "bc");
+        final Dictionary<String, Object> b = new Hashtable<>();
+        b.put("ab", "c");
+        assertNotEquals(ConfigFingerprint.compute(a), ConfigFingerprint.compute(b));
+
+        final Dictionary<String, Object> c = new Hashtable<>();
+        c.put("a", new String[] {"bc"});
+        assertNotEquals(ConfigFingerprint.compute(a), ConfigFingerprint.compute(c));
+
+        final Dictionary<String, Object> d = new Hashtable<>();
+        d.put("a", new String[] {"b", "c"});
+        assertNotEquals(ConfigFingerprint.compute(c), ConfigFingerprint.compute(d));
+
+        assertNotEquals(ConfigFingerprint.compute(new Hashtable<>()), ConfigFingerprint.compute(a));
+    }
+
+    @Test
+    void testResourceFingerprintIsCached() {
+        final Dictionary<String, Object> dict = new Hashtable<>();
+        dict.put("a", "b");
+        final TaskResource rsrc = Mockito.mock(TaskResource.class);
+        Mockito.when(rsrc.getDictionary()).thenReturn(dict);
+        final long fingerprint = ConfigFingerprint.get(rsrc);
+        Mockito.verify(rsrc).setTemporaryAttribute(ConfigFingerprint.class.getName(), fingerprint);
+
+        Mockito.when(rsrc.getTemporaryAttribute(ConfigFingerprint.class.getName()))
+                .thenReturn(fingerprint);
+        assertEquals(fingerprint, ConfigFingerprint.get(rsrc));
+        Mockito.verify(rsrc, Mockito.times(1)).getDictionary();
+    }
+
+    @Test
+    void testConfigurationFingerprintFollowsChangeCount() {
+        final Dictionary<String, Object> first = new Hashtable<>();
+        first.put("a", "b");
+        final Dictionary<String, Object> second = new Hashtable<>();
+        second.put("a", "c");
+        final Configuration cfg = Mockito.mock(Configuration.class);
+        Mockito.when(cfg.getPid()).thenReturn("pid");
+        Mockito.when(cfg.getChangeCount()).thenReturn(1L);
+        Mockito.when(cfg.getProperties()).thenReturn(first);
+
+        final ConfigFingerprint fingerprints = new ConfigFingerprint();
+        assertTrue(fingerprints.matches(cfg, ConfigFingerprint.compute(first)));
+        assertFalse(fingerprints.matches(cfg, ConfigFingerprint.compute(second)));
+        Mockito.verify(cfg, Mockito.times(1)).getProperties();
+
+        Mockito.when(cfg.getChangeCount()).thenReturn(2L);
+        Mockito.when(cfg.getProperties()).thenReturn(second);
+        assertTrue(fingerprints.matches(cfg, ConfigFingerprint.compute(second)));
+
+        // a configuration without properties is never the same
+        final Configuration empty = Mockito.mock(Configuration.class);
+        Mockito.when(empty.getPid()).thenReturn("empty");
+        assertFalse(fingerprints.matches(empty, ConfigFingerprint.compute(null)));
+    }
+
+    @Test
+    void testRecreatedConfigurationIsNotCached() {
+        final Dictionary<String, Object> first = new Hashtable<>();
+        first.put("a", "b");
+        final Dictionary<String, Object> second = new Hashtable<>();
+        second.put("a", "c");
+        final Configuration cfg = Mockito.mock(Configuration.class);
+        Mockito.when(cfg.getPid()).thenReturn("pid");
+        Mockito.when(cfg.getChangeCount()).thenReturn(1L);
+        Mockito.when(cfg.getProperties()).thenReturn(first);
+
+        final ConfigFingerprint fingerprints = new ConfigFingerprint();
+        assertTrue(fingerprints.matches(cfg, ConfigFingerprint.compute(first)));
+
+        // deleted and created again without the cache being cleared, same pid and change count
+        final Configuration recreated = Mockito.mock(Configuration.class);
+        Mockito.when(recreated.getPid()).thenReturn("pid");
+        Mockito.when(recreated.getChangeCount()).thenReturn(1L);
+        Mockito.when(recreated.getProperties()).thenReturn(second);
+        assertFalse(fingerprints.matches(recreated, ConfigFingerprint.compute(first)));
+        assertTrue(fingerprints.matches(recreated, ConfigFingerprint.compute(second)));
+        Mockito.verify(recreated, Mockito.times(1)).getProperties();
+    }
+
+    @Test
+    void testMatchingFingerprintIsConfirmed() {
+        final Dictionary<String, Object> installed = new Hashtable<>();
+        installed.put("a", "b");
+        final Dictionary<String, Object> other = new Hashtable<>();
+        other.put("a", "c");
+        final Configuration cfg = Mockito.mock(Configuration.class);
+        Mockito.when(cfg.getPid()).thenReturn("pid");
+        Mockito.when(cfg.getChangeCount()).thenReturn(1L);
+        Mockito.when(cfg.getProperties()).thenReturn(installed);
+
+        final ConfigFingerprint fingerprints = new ConfigFingerprint();
+        assertTrue(fingerprints.isSameData(cfg, ConfigFingerprint.compute(installed), installed));
+        // a colliding fingerprint is not enough
+        assertFalse(fingerprints.isSameData(cfg, ConfigFingerprint.compute(installed), other));
+        // a different fingerprint does not need a comparison
+        Mockito.clearInvocations(cfg);
+        assertFalse(fingerprints.isSameData(cfg, ConfigFingerprint.compute(other), other));
+        Mockito.verify(cfg, Mockito.never()).getProperties();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConfigResourceIdTest {
+
+    private static final Pattern FELIX_FACTORY_CONFIG_PATTERN =
+            Pattern.compile("(.*)\\.([0-9a-f]{8}-(?:[0-9a-f]{4}-){3}[0-9a-f]{12})");
+
+    private static final String[] EXTENSIONS = {".config", ".properties", ".cfg", ".cfg.json"};
+
+    /**
+     * Reference implementation based on a regular expression
+     */
+    private static String[] parse(final String rawUrl) {
+        final String url = rawUrl.replace('\\', '/');
+        int pos = url.lastIndexOf('/');
+        if (pos == -1) {
+            pos = url.indexOf(':');
+        }
+        String pid = pos != -1 ? url.substring(pos + 1) : url;
+        for (final String ext : EXTENSIONS) {
+            if (pid.endsWith(ext)) {
+                pid = pid.substring(0, pid.length() - ext.length());
+                break;
+            }
+        }
+        final Matcher matcher = FELIX_FACTORY_CONFIG_PATTERN.matcher(pid);
+        if (matcher.matches()) {
+            return new String[] {matcher.group(1), matcher.group(2)};
+        }
+        int n = pid.indexOf('~');
+        if (n == -1) {
+            n = pid.indexOf('-');
+        }
+        if (n > 0) {
+            return new String[] {pid.substring(0, n), pid.substring(n + 1)};
+        }
+        return new String[] {null, pid};
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "a.b.c",
+                "jcrinstall:/apps/config/a.b.c.config",
+                "jcrinstall:/apps/config/a.b.c.cfg.json",
+                "jcrinstall:/apps/config/a.b.c.cfg",
+                "jcrinstall:/apps/config/a.b.c.properties",
+                "jcrinstall:/apps/config/a.b.c.json",
+                "file:C:\\config\\a.b.c~name.cfg.json",
+                "file:C:\\config/a.b.c-name.config",
+                "jcrinstall:a.b.c~name~other.config",
+                "jcrinstall:/apps/config/~name.config",
+                "jcrinstall:/apps/config/-name.config",
+                "jcrinstall:/apps/config/a~.config",
+                "jcrinstall:/apps/config/.config",
+                "jcrinstall:/apps/config/",
+                "jcrinstall:/apps/config/a.b.c.0a1b2c3d-0000-4a4a-8b8b-0123456789ab.config",
+                "jcrinstall:/apps/config/a.b.c.0a1b2c3d-0000-4a4a-8b8b-0123456789ab",
+                "jcrinstall:/apps/config/.0a1b2c3d-0000-4a4a-8b8b-0123456789ab",
+                "jcrinstall:/apps/config/a.b.c.0A1B2C3D-0000-4a4a-8b8b-0123456789ab.config",
+                "jcrinstall:/apps/config/a.b.c-0a1b2c3d-0000-4a4a-8b8b-0123456789ab.config",
+                "jcrinstall:/apps/config/a.b.c.0a1b2c3d-0000-4a4a-8b8b-0123456789a.config",
+                "jcrinstall:/apps/config/a\nb.0a1b2c3d-0000-4a4a-8b8b-0123456789ab.config",
+                "0a1b2c3d-0000-4a4a-8b8b-0123456789ab"
+            })
+    void testSameAsRegularExpression(final String url) {
+        final String[] expected = parse(url);
+        final ConfigResourceId id = ConfigResourceId.parse(url);
+        assertEquals(expected[0], id.factoryPid, url);
+        assertEquals(expected[1], id.configPid, url);
+        assertEquals(
+                expected[0] == null ? expected[1] : ConfigUtil.getPIDOfFactoryPID(expected[0], expected[1]),
+                id.getId());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.ResourceChangeListener;
+import org.apache.sling.installer.api.info.InfoProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ConfigTaskCreatorTest {
+
+    private boolean oldAsyncWriteBack;
+
+    private boolean oldChangeCountSuppression;
+
+    private List<String> oldMergeSchemes;
+
+    private ResourceChangeListener listener;
+
+    private ConfigTaskCreator creator;
+
+    @BeforeEach
+    void setup() throws Exception {
+        oldAsyncWriteBack = Activator.ASYNC_WRITE_BACK;
+        Activator.ASYNC_WRITE_BACK = true;
+        oldChangeCountSuppression = Activator.CHANGE_COUNT_SUPPRESSION;
+        Activator.CHANGE_COUNT_SUPPRESSION = false;
+        oldMergeSchemes = Activator.MERGE_SCHEMES;
+        Activator.MERGE_SCHEMES = null;
+
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put("key", "value");
+        final Configuration config = Mockito.mock(Configuration.class);
+        Mockito.when(config.getProperties()).thenReturn(props);
+        final ConfigurationAdmin configAdmin = Mockito.mock(ConfigurationAdmin.class);
+        Mockito.when(configAdmin.listConfigurations(ArgumentMatchers.anyString()))
+                .thenReturn(new Configuration[] {config});
+
+        listener = Mockito.mock(ResourceChangeListener.class);
+        creator = new ConfigTaskCreator(listener, configAdmin, Mockito.mock(InfoProvider.class));
+    }
+
+    @AfterEach
+    void cleanup() {
+        Activator.ASYNC_WRITE_BACK = oldAsyncWriteBack;
+        Activator.CHANGE_COUNT_SUPPRESSION = oldChangeCountSuppression;
+        Activator.MERGE_SCHEMES = oldMergeSchemes;
+    }
+
+    private static ConfigurationEvent event(final String pid) {
+        final ConfigurationEvent event = Mockito.mock(ConfigurationEvent.class);
+        Mockito.when(event.getPid()).thenReturn(pid);
+        Mockito.when(event.getType()).thenReturn(ConfigurationEvent.CM_UPDATED);
+        return event;
+    }
+
+    private void verifyWriteBacks(final int times) {
+        Mockito.verify(listener, Mockito.times(times))
+                .resourceAddedOrUpdated(
+                        ArgumentMatchers.eq(InstallableResource.TYPE_CONFIG),
+                        ArgumentMatchers.anyString(),
+                        ArgumentMatchers.isNull(),
+                        ArgumentMatchers.any(),
+                        ArgumentMatchers.any());
+    }
+
+    @Test
+    void testPendingEventDiscardedByOwnEvent() {
+        final String pid = "ConfigTaskCreatorTest.discarded";
+        // an external change is queued, the worker is not started yet
+        creator.configurationEvent(event(pid));
+        // the installer writes the configuration and its event arrives
+        Coordinator.SHARED.add(new Coordinator.Operation(pid, null, false));
+        creator.configurationEvent(event(pid));
+
+        creator.activate();
+        creator.deactivate();
+        verifyWriteBacks(0);
+        assertFalse(Coordinator.SHARED.isPending(pid, null));
+    }
+
+    @Test
+    void testQueuedEventIgnoredBeforeOwnEvent() {
+        final String pid = "ConfigTaskCreatorTest.ignored";
+        // an external change is queued, the worker is not started yet
+        creator.configurationEvent(event(pid));
+        // the installer writes the configuration before the queued event is processed
+        Coordinator.SHARED.add(new Coordinator.Operation(pid, null, false));
+
+        creator.activate();
+        creator.deactivate();
+        verifyWriteBacks(0);
+
+        // the event of the installer arrives afterwards
+        creator.configurationEvent(event(pid));
+        verifyWriteBacks(0);
+        assertFalse(Coordinator.SHARED.isPending(pid, null));
+
+        // later external changes are written back
+        creator.configurationEvent(event(pid));
+        verifyWriteBacks(1);
+    }
+}
@@ -18,9 +18,23 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.UpdatableResourceGroup;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class ConfigUpdateHandlerTest {
 
@@ -71,4 +85,181 @@ class ConfigUpdateHandlerTest {
                 "a.b.c.MyFactoryConfig",
                 "5a61b4ab-c8c9-4e20-ab3d-b8b7ea12dfca");
     }
+
+    private static UpdatableResourceGroup group(final String id, final String alias) {
+        final UpdatableResourceGroup group = Mockito.mock(UpdatableResourceGroup.class);
+        Mockito.when(group.getResourceType()).thenReturn(InstallableResource.TYPE_CONFIG);
+        Mockito.when(group.getId()).thenReturn(id);
+        Mockito.when(group.getAlias()).thenReturn(alias);
+        return group;
+    }
+
+    private static Configuration config(final String factoryPid, final String pid) {
+        final Configuration cfg = Mockito.mock(Configuration.class);
+        Mockito.when(cfg.getFactoryPid()).thenReturn(factoryPid);
+        Mockito.when(cfg.getPid()).thenReturn(pid);
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put("a", "b");
+        Mockito.when(cfg.getProperties()).thenReturn(props);
+        return cfg;
+    }
+
+    @Test
+    void testUpdateUsesSingleListing() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ServicesListener listener = Mockito.mock(ServicesListener.class);
+        Mockito.when(listener.isActive()).thenReturn(true);
+
+        final Configuration legacy = config("org.x.Factory", "org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        final Configuration duplicate = config("org.x.Other", "org.x.Other.my-config");
+        final Configuration unrelated = config(null, "org.x.Single");
+        Mockito.when(ca.listConfigurations(null)).thenReturn(new Configuration[] {legacy, duplicate, unrelated});
+        final Configuration created = config("org.x.Factory", "org.x.Factory~my-platform");
+        Mockito.when(ca.getFactoryConfiguration("org.x.Factory", "my-platform", null))
+                .thenReturn(created);
+
+        final UpdatableResourceGroup update =
+                group("org.x.Factory.my-platform", "org.x.Factory.org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        final UpdatableResourceGroup cleanup = group("org.x.Other~my-config", null);
+        final UpdatableResourceGroup missing = group("org.x.Missing~my-config", null);
+
+        new ConfigUpdateHandler(ca, listener).update(Arrays.asList(update, cleanup, missing));
+
+        Mockito.verify(ca, Mockito.times(1)).listConfigurations(Mockito.any());
+        Mockito.verify(legacy).delete();
+        Mockito.verify(created).update(Mockito.any());
+        Mockito.verify(update).setId("org.x.Factory~my-platform");
+        Mockito.verify(duplicate).delete();
+        Mockito.verify(unrelated, Mockito.never()).delete();
+        Mockito.verify(listener).finishedUpdating();
+    }
+
+    @Test
+    void testUpdateWithoutMigrationDoesNotListConfigurations() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ServicesListener listener = Mockito.mock(ServicesListener.class);
+        Mockito.when(listener.isActive()).thenReturn(true);
+
+        new ConfigUpdateHandler(ca, listener)
+                .update(Arrays.asList(group("org.x.Single", null), group("org.x.Factory~name", null)));
+
+        Mockito.verify(ca, Mockito.never()).listConfigurations(Mockito.any());
+        Mockito.verify(listener).finishedUpdating();
+    }
+
+    @Test
+    void testParallelMigration() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ServicesListener listener = Mockito.mock(ServicesListener.class);
+        Mockito.when(listener.isActive()).thenReturn(true);
+
+        final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+        final List<Configuration> configs = new ArrayList<>();
+        final List<UpdatableResourceGroup> groups = new ArrayList<>();
+        final List<Thread> updatingThreads = Collections.synchronizedList(new ArrayList<>());
+        for (int f = 0; f < 4; f++) {
+            for (int i = 0; i < 5; i++) {
+                final String factoryPid = "org.x.Factory" + f;
+                final Configuration cfg = config(factoryPid, factoryPid + ".config-" + i);
+                Mockito.doAnswer(inv -> deleted.add(cfg.getPid())).when(cfg).delete();
+                configs.add(cfg);
+                final UpdatableResourceGroup group = group(factoryPid + "~config-" + i, null);
+                Mockito.doAnswer(inv -> updatingThreads.add(Thread.currentThread()))
+                        .when(group)
+                        .update();
+                groups.add(group);
+            }
+        }
+        Mockito.when(ca.listConfigurations(null)).thenReturn(configs.toArray(new Configuration[0]));
+
+        Activator.MIGRATION_THREADS = 3;
+        try {
+            new ConfigUpdateHandler(ca, listener).update(groups);
+        } finally {
+            Activator.MIGRATION_THREADS = 0;
+        }
+
+        assertEquals(20, deleted.size());
+        for (int f = 0; f < 4; f++) {
+            final String prefix = "org.x.Factory" + f + ".";
+            final List<String> perFactory = new ArrayList<>();
+            for (final String pid : deleted) {
+                if (pid.startsWith(prefix)) {
+                    perFactory.add(pid);
+                }
+            }
+            // configurations of the same factory are migrated in order
+            for (int i = 0; i < 5; i++) {
+                assertEquals(prefix + "config-" + i, perFactory.get(i));
+            }
+        }
+        // duplicate cleanup does not update the group
+        assertEquals(0, updatingThreads.size());
+        Mockito.verify(listener).finishedUpdating();
+
+        // the groups of migrated configurations are updated on the calling thread
+        final Configuration legacy = config("org.x.Factory", "org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        final Configuration created = config("org.x.Factory", "org.x.Factory~my-platform");
+        Mockito.when(ca.listConfigurations(null)).thenReturn(new Configuration[] {legacy});
+        Mockito.when(ca.getFactoryConfiguration("org.x.Factory", "my-platform", null))
+                .thenReturn(created);
+        final UpdatableResourceGroup update =
+                group("org.x.Factory.my-platform", "org.x.Factory.org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        Mockito.doAnswer(inv -> updatingThreads.add(Thread.currentThread()))
+                .when(update)
+                .update();
+        Activator.MIGRATION_THREADS = 3;
+        try {
+            new ConfigUpdateHandler(ca, listener).update(Arrays.asList(update, groups.get(0)));
+        } finally {
+            Activator.MIGRATION_THREADS = 0;
+        }
+        Mockito.verify(legacy).delete();
+        assertEquals(1, updatingThreads.size());
+        assertSame(Thread.currentThread(), updatingThreads.get(0));
+    }
+
+    @Test
+    void testParallelMigrationFailure() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ServicesListener listener = Mockito.mock(ServicesListener.class);
+        Mockito.when(listener.isActive()).thenReturn(true);
+
+        final Configuration failing = config("org.x.Factory", "org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        Mockito.doThrow(new IllegalStateException("deleted")).when(failing).delete();
+        final Configuration skipped = config("org.x.Factory", "org.x.Factory.53e4778d-3e72-460a-9da9-bca80558f1f7");
+        final Configuration other = config("org.x.Other", "org.x.Other.63e4778d-3e72-460a-9da9-bca80558f1f7");
+        Mockito.when(ca.listConfigurations(null)).thenReturn(new Configuration[] {failing, skipped, other});
+        Mockito.when(ca.getFactoryConfiguration(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenAnswer(inv -> config(inv.getArgument(0), inv.getArgument(0) + "~" + inv.getArgument(1)));
+
+        final UpdatableResourceGroup failingGroup =
+                group("org.x.Factory.a", "org.x.Factory.org.x.Factory.43e4778d-3e72-460a-9da9-bca80558f1f7");
+        final UpdatableResourceGroup skippedGroup =
+                group("org.x.Factory.b", "org.x.Factory.org.x.Factory.53e4778d-3e72-460a-9da9-bca80558f1f7");
+        final UpdatableResourceGroup otherGroup =
+                group("org.x.Other.c", "org.x.Other.org.x.Other.63e4778d-3e72-460a-9da9-bca80558f1f7");
+
+        Activator.MIGRATION_THREADS = 3;
+        try {
+            new ConfigUpdateHandler(ca, listener).update(Arrays.asList(failingGroup, skippedGroup, otherGroup));
+        } finally {
+            Activator.MIGRATION_THREADS = 0;
+        }
+
+        // the failed migration and the remaining ones of the same factory pid keep their old id and alias
+        Mockito.verify(skipped, Mockito.never()).delete();
+        for (final UpdatableResourceGroup group : Arrays.asList(failingGroup, skippedGroup)) {
+            Mockito.verify(group, Mockito.never()).setId(Mockito.any());
+            Mockito.verify(group, Mockito.never()).setAlias(Mockito.any());
+            Mockito.verify(group, Mockito.never()).update();
+        }
+        // other factory pids are migrated
+        Mockito.verify(other).delete();
+        final InOrder inOrder = Mockito.inOrder(otherGroup);
+        inOrder.verify(otherGroup).setId("org.x.Other~c");
+        inOrder.verify(otherGroup).setAlias(null);
+        inOrder.verify(otherGroup).update();
+        Mockito.verify(listener).finishedUpdating();
+    }
 }
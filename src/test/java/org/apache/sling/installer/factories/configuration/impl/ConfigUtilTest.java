@@ -18,16 +18,21 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.osgi.framework.Constants;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -124,6 +129,33 @@ class ConfigUtilTest {
         assertSame(c1, cfg);
     }
 
+    @Test
+    void testGetLegacyFactoryConfig() throws Exception {
+        final Configuration byAlias = Mockito.mock(Configuration.class);
+        Mockito.when(byAlias.getPid()).thenReturn("a(b.generated");
+        final Configuration byLegacyPid = Mockito.mock(Configuration.class);
+        Mockito.when(byLegacyPid.getPid()).thenReturn("a(b.c1");
+        final ConfigurationAdmin cm = Mockito.mock(ConfigurationAdmin.class);
+        final String filter = "(&(service.factoryPid=a\\(b)(|(service.pid=c1)(service.pid=a\\(b.c1)"
+                + "(org.apache.sling.installer.osgi.factoryaliaspid=c1)))";
+        Mockito.when(cm.listConfigurations(filter)).thenReturn(new Configuration[] {byAlias, byLegacyPid});
+
+        assertSame(byLegacyPid, ConfigUtil.getLegacyFactoryConfig(cm, "a(b", null, "c1"));
+        assertSame(byLegacyPid, ConfigUtil.getLegacyFactoryConfig(cm, "a(b", "a(b.c1", null));
+        Mockito.verify(cm, Mockito.times(2)).listConfigurations(Mockito.anyString());
+
+        Mockito.when(cm.listConfigurations(filter)).thenReturn(new Configuration[] {byAlias});
+        assertSame(byAlias, ConfigUtil.getLegacyFactoryConfig(cm, "a(b", null, "c1"));
+        assertNull(ConfigUtil.getLegacyFactoryConfig(cm, "a(b", null, "c2"));
+    }
+
+    @Test
+    void testEncode() {
+        final String value = "a.b.c";
+        assertSame(value, ConfigUtil.encode(value));
+        assertEquals("a\\\\b\\*c\\(d\\)", ConfigUtil.encode("a\\b*c(d)"));
+    }
+
     @Test
     void testIsSameDataWithSwitchFromArrayToSingleValue() {
         final Dictionary<String, Object> a = new Hashtable<>();
@@ -135,4 +167,77 @@ class ConfigUtilTest {
         assertFalse(ConfigUtil.isSameData(a, b));
         assertFalse(ConfigUtil.isSameData(b, a));
     }
+
+    @Test
+    void testIsSameValueCrossTypes() {
+        assertTrue(ConfigUtil.isSameValue(1, 1L));
+        assertTrue(ConfigUtil.isSameValue((short) -12, "-12"));
+        assertTrue(ConfigUtil.isSameValue("42", (byte) 42));
+        assertTrue(ConfigUtil.isSameValue(Long.MIN_VALUE, String.valueOf(Long.MIN_VALUE)));
+        assertTrue(ConfigUtil.isSameValue(Long.MAX_VALUE, String.valueOf(Long.MAX_VALUE)));
+        assertFalse(ConfigUtil.isSameValue(42, "042"));
+        assertFalse(ConfigUtil.isSameValue(42, "-42"));
+        assertFalse(ConfigUtil.isSameValue(-42, "42"));
+        assertFalse(ConfigUtil.isSameValue(0, ""));
+        assertFalse(ConfigUtil.isSameValue(0, "-"));
+        assertTrue(ConfigUtil.isSameValue(0, "0"));
+        assertTrue(ConfigUtil.isSameValue(Boolean.TRUE, "true"));
+        assertFalse(ConfigUtil.isSameValue("TRUE", Boolean.TRUE));
+        assertTrue(ConfigUtil.isSameValue(1.5f, 1.5d));
+        assertTrue(ConfigUtil.isSameValue(1.5d, "1.5"));
+        assertFalse(ConfigUtil.isSameValue(1, 1.0d));
+        assertTrue(ConfigUtil.isSameValue('c', "c"));
+    }
+
+    @Test
+    void testIsSameValueArrays() {
+        assertTrue(ConfigUtil.isSameValue(new long[] {1, 2}, new long[] {1, 2}));
+        assertFalse(ConfigUtil.isSameValue(new long[] {1, 2}, new long[] {1, 3}));
+        assertTrue(ConfigUtil.isSameValue(new int[] {1, 2}, new Long[] {1L, 2L}));
+        assertTrue(ConfigUtil.isSameValue(new int[] {1, 2}, new String[] {"1", "2"}));
+        assertTrue(ConfigUtil.isSameValue(new String[] {"1", "2"}, new short[] {1, 2}));
+        assertFalse(ConfigUtil.isSameValue(new int[] {1, 2}, new String[] {"1", "3"}));
+        assertFalse(ConfigUtil.isSameValue(new int[] {1, 2}, new int[] {1, 2, 3}));
+        assertTrue(ConfigUtil.isSameValue(new boolean[] {true}, new String[] {"true"}));
+        assertTrue(ConfigUtil.isSameValue(new Boolean[] {true, null}, new String[] {"true", null}));
+        assertTrue(ConfigUtil.isSameValue(new String[] {"a", null}, new String[] {"a", null}));
+        assertFalse(ConfigUtil.isSameValue(new String[] {"a"}, new String[] {null}));
+        assertTrue(ConfigUtil.isSameValue(new String[] {"null"}, new String[] {null}));
+    }
+
+    @Test
+    void testIsSameValueIntegralArraysWithNull() {
+        assertTrue(ConfigUtil.isSameValue(new Long[] {1L, null}, new Integer[] {1, null}));
+        assertFalse(ConfigUtil.isSameValue(new Long[] {1L, null}, new Integer[] {1, 2}));
+        assertFalse(ConfigUtil.isSameValue(new long[] {1, 2}, new Long[] {1L, null}));
+        assertTrue(ConfigUtil.isSameValue(new Long[] {1L, null}, new String[] {"1", null}));
+        assertTrue(ConfigUtil.isSameValue(new String[] {"1", "null"}, new Integer[] {1, null}));
+        assertFalse(ConfigUtil.isSameValue(new Long[] {null}, new String[] {"1"}));
+    }
+
+    @Test
+    void testIsSameValueCollections() {
+        assertTrue(ConfigUtil.isSameValue(Arrays.asList("a", "b"), new ArrayList<>(Arrays.asList("a", "b"))));
+        assertTrue(ConfigUtil.isSameValue(Arrays.asList(1, 2), Arrays.asList("1", "2")));
+        assertFalse(ConfigUtil.isSameValue(Arrays.asList(1, 2), Arrays.asList(1, 3)));
+        assertFalse(ConfigUtil.isSameValue(Arrays.asList(1, 2), Arrays.asList(1)));
+        // a collection is compared with a single value by its string representation
+        assertTrue(ConfigUtil.isSameValue(Arrays.asList(1, 2), "[1, 2]"));
+        assertFalse(ConfigUtil.isSameValue(Arrays.asList(1, 2), new int[] {1, 2}));
+    }
+
+    @Test
+    void testIsSameDataIgnoresKeysAndDetectsMissingKeys() {
+        final Dictionary<String, Object> a = new Hashtable<>();
+        final Dictionary<String, Object> b = new Hashtable<>();
+        a.put("a", "1");
+        a.put(Constants.SERVICE_PID, "pid");
+        b.put("a", 1);
+        assertTrue(ConfigUtil.isSameData(a, b));
+        assertTrue(ConfigUtil.isSameData(b, a));
+
+        b.put("b", "2");
+        assertFalse(ConfigUtil.isSameData(a, b));
+        assertFalse(ConfigUtil.isSameData(b, a));
+    }
 }
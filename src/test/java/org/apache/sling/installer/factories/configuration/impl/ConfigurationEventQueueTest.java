@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.osgi.service.cm.ConfigurationEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigurationEventQueueTest {
+
+    private static ConfigurationEvent event(final String pid) {
+        final ConfigurationEvent event = Mockito.mock(ConfigurationEvent.class);
+        Mockito.when(event.getPid()).thenReturn(pid);
+        Mockito.when(event.getType()).thenReturn(ConfigurationEvent.CM_UPDATED);
+        return event;
+    }
+
+    @Test
+    void testCoalescingAndCapacity() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<ConfigurationEvent> processed = new CopyOnWriteArrayList<>();
+        final ConfigurationEventQueue queue = new ConfigurationEventQueue(2, e -> {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(e);
+            done.countDown();
+        });
+        queue.start();
+        try {
+            final ConfigurationEvent first = event("a");
+            assertTrue(queue.offer(first));
+            // wait until the worker is busy with the first event
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+            final ConfigurationEvent b1 = event("b");
+            final ConfigurationEvent b2 = event("b");
+            final ConfigurationEvent c = event("c");
+            assertTrue(queue.offer(b1));
+            assertTrue(queue.offer(c));
+            // queue is full, but pending pids are still coalesced
+            assertFalse(queue.offer(event("d")));
+            assertTrue(queue.offer(b2));
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(3, processed.size());
+            assertSame(first, processed.get(0));
+            assertSame(b2, processed.get(1));
+            assertSame(c, processed.get(2));
+        } finally {
+            queue.stop(0);
+        }
+        assertFalse(queue.offer(event("e")));
+    }
+
+    @Test
+    void testStopProcessesPendingEvents() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<ConfigurationEvent> processed = new CopyOnWriteArrayList<>();
+        final ConfigurationEventQueue queue = new ConfigurationEventQueue(10, e -> {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(e);
+        });
+        // events are queued before the worker is started
+        assertTrue(queue.offer(event("a")));
+        queue.start();
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        assertTrue(queue.offer(event("b")));
+        release.countDown();
+
+        queue.stop(10000);
+        assertEquals(2, processed.size());
+        assertFalse(queue.offer(event("c")));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConfigurationFiltersTest {
+
+    @Test
+    void testFilters() {
+        final ConfigurationFilters filters = new ConfigurationFilters(10);
+        assertEquals("(service.pid=a.b)", filters.getPidFilter("a.b"));
+        assertEquals("(service.pid=a\\*b)", filters.getPidFilter("a*b"));
+        assertEquals(
+                "(&(service.factoryPid=a.b)(service.pid=a.b~c\\)))",
+                filters.getFactoryConfigurationFilter("a.b", "a.b~c)"));
+        assertEquals(
+                "(&(service.factoryPid=a\\(b)(|(service.pid=c)(service.pid=a\\(b.c)"
+                        + "(org.apache.sling.installer.osgi.factoryaliaspid=c)))",
+                filters.getLegacyFactoryConfigurationFilter("a(b", "c"));
+        assertEquals(
+                "(&(service.factoryPid=a.b)(service.pid=a.b.null))",
+                filters.getLegacyFactoryConfigurationFilter("a.b", null));
+    }
+
+    @Test
+    void testCache() {
+        final ConfigurationFilters filters = new ConfigurationFilters(2);
+        final String a = filters.getPidFilter("a");
+        assertSame(a, filters.getPidFilter("a"));
+        // same pid, different filter
+        assertEquals("(&(service.factoryPid=f)(service.pid=a))", filters.getFactoryConfigurationFilter("f", "a"));
+        assertEquals(2, filters.size());
+
+        // a is the most recently used entry and kept
+        assertSame(a, filters.getPidFilter("a"));
+        filters.getPidFilter("b");
+        assertEquals(2, filters.size());
+        assertSame(a, filters.getPidFilter("a"));
+
+        filters.getPidFilter("c");
+        filters.getPidFilter("d");
+        assertNotSame(a, filters.getPidFilter("a"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigurationIndexTest {
+
+    private static Configuration config(final String pid, final String factoryPid, final String alias)
+            throws Exception {
+        final Configuration cfg = Mockito.mock(Configuration.class);
+        Mockito.when(cfg.getPid()).thenReturn(pid);
+        Mockito.when(cfg.getFactoryPid()).thenReturn(factoryPid);
+        final Hashtable<String, Object> props = new Hashtable<>();
+        if (alias != null) {
+            props.put(ConfigUtil.ALIAS_KEY, alias);
+        }
+        Mockito.when(cfg.getProperties()).thenReturn(props);
+        return cfg;
+    }
+
+    @Test
+    void testLookups() throws Exception {
+        final Configuration single = config("a.b", null, null);
+        final Configuration named = config("a.f~one", "a.f", null);
+        final Configuration legacy = config("a.f.0a1b2c3d-0000-0000-0000-000000000000", "a.f", "two");
+        final Configuration legacyPid = config("a.f.three", "a.f", null);
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        Mockito.when(ca.listConfigurations(null)).thenReturn(new Configuration[] {single, named, legacy, legacyPid});
+
+        final ConfigurationIndex index = new ConfigurationIndex(ca);
+        assertFalse(index.isPopulated());
+        index.populate();
+        assertTrue(index.isPopulated());
+
+        assertSame(single, index.get(null, "a.b"));
+        assertSame(named, index.get(null, "a.f~one"));
+        assertSame(named, index.get("a.f", "one"));
+        assertSame(legacy, index.get("a.f", "two"));
+        assertSame(legacyPid, index.get("a.f", "three"));
+        assertNull(index.get("a.b", "one"));
+        assertNull(index.get(null, "a.c"));
+        Mockito.verify(ca, Mockito.times(1)).listConfigurations(Mockito.any());
+
+        // removing a configuration removes its alias
+        index.remove(legacy.getPid());
+        assertNull(index.get("a.f", "two"));
+        assertSame(legacyPid, index.get("a.f", "three"));
+    }
+
+    @Test
+    void testMissFallsBackToConfigAdmin() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ConfigurationIndex index = new ConfigurationIndex(ca);
+        index.populate();
+
+        // created outside of the installer after the index has been populated
+        final Configuration created = config("a.x", null, null);
+        final String filter = ConfigurationFilters.SHARED.getPidFilter("a.x");
+        Mockito.when(ca.listConfigurations(filter)).thenReturn(new Configuration[] {created});
+        assertNull(index.get(null, "a.x"));
+        assertSame(created, ConfigUtil.getConfiguration(ca, index, null, "a.x"));
+
+        // afterwards the configuration is known to the index
+        assertSame(created, index.get(null, "a.x"));
+        assertSame(created, ConfigUtil.getConfiguration(ca, index, null, "a.x"));
+        Mockito.verify(ca, Mockito.times(1)).listConfigurations(filter);
+    }
+
+    @Test
+    void testAddAndRemove() throws Exception {
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        final ConfigurationIndex index = new ConfigurationIndex(ca);
+        index.populate();
+
+        final Configuration named = config("a.f~one", "a.f", null);
+        index.add(named);
+        assertSame(named, index.get("a.f", "one"));
+        index.remove("a.f~one");
+        assertNull(index.get("a.f", "one"));
+
+        index.add(named);
+        index.invalidate("a.f", "one");
+        assertNull(index.get(null, "a.f~one"));
+    }
+
+    @Test
+    void testBatch() throws Exception {
+        final Configuration single = config("a.b", null, null);
+        final Configuration named = config("a.f~one", "a.f", null);
+        final Configuration legacy = config("a.f.0a1b2c3d-0000-0000-0000-000000000000", "a.f", "two");
+        final ConfigurationAdmin ca = Mockito.mock(ConfigurationAdmin.class);
+        Mockito.when(ca.listConfigurations("(|(service.pid=a.b)(service.factoryPid=a.f)(service.pid=a.c))"))
+                .thenReturn(new Configuration[] {single, named, legacy});
+
+        final ConfigurationBatch batch = new ConfigurationBatch(ca);
+        assertTrue(batch.add(null, "a.b"));
+        assertTrue(batch.add("a.f", "one"));
+        assertTrue(batch.add("a.f", "two"));
+        assertTrue(batch.add(null, "a.c"));
+
+        assertTrue(batch.isPopulated());
+        assertSame(single, batch.get(null, "a.b"));
+        assertSame(named, batch.get("a.f", "one"));
+        assertSame(legacy, batch.get("a.f", "two"));
+        assertNull(batch.get(null, "a.c"));
+        assertSame(named, ConfigUtil.getConfiguration(ca, batch, "a.f", "one"));
+
+        // a fetched batch can't be extended
+        assertFalse(batch.add(null, "a.d"));
+        assertTrue(batch.isPopulated());
+        Mockito.verify(ca, Mockito.times(1)).listConfigurations(Mockito.any());
+    }
+}
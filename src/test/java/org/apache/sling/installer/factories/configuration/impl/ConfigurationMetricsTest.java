@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.inventory.Format;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigurationMetricsTest {
+
+    @Test
+    void testCounters() {
+        final ConfigurationMetrics metrics = new ConfigurationMetrics();
+        metrics.listConfigurations();
+        metrics.update();
+        metrics.update();
+        metrics.delete();
+        metrics.installSkipped();
+        metrics.installSkipped();
+        metrics.installSkipped();
+        metrics.installApplied();
+        metrics.writeBack();
+        metrics.coordinatorHit();
+        metrics.coordinatorMiss();
+        metrics.coordinatorMiss();
+        metrics.coordinatorExpired();
+
+        final Map<String, Number> values = metrics.getMetrics();
+        assertEquals(1L, values.get("cm.listConfigurations"));
+        assertEquals(2L, values.get("cm.update"));
+        assertEquals(1L, values.get("cm.delete"));
+        assertEquals(3L, values.get("install.skipped"));
+        assertEquals(1L, values.get("install.applied"));
+        assertEquals(0.75d, values.get("install.skipRatio"));
+        assertEquals(1L, values.get("event.writeBacks"));
+        assertEquals(1L, values.get("coordinator.hits"));
+        assertEquals(2L, values.get("coordinator.misses"));
+        assertEquals(1L, values.get("coordinator.expired"));
+        assertEquals(0L, values.get("task.install.count"));
+        assertEquals(0.0d, new ConfigurationMetrics().getMetrics().get("install.skipRatio"));
+    }
+
+    @Test
+    void testTimer() {
+        final ConfigurationMetrics.Timer timer = new ConfigurationMetrics.Timer();
+        for (int i = 0; i < 99; i++) {
+            timer.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        timer.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // 100 micros is in the bucket [64, 128)
+        assertEquals(127, timer.getPercentileMicros(0.5));
+        assertEquals(127, timer.getPercentileMicros(0.99));
+        assertEquals(10_000, timer.getPercentileMicros(1.0));
+
+        final ConfigurationMetrics metrics = new ConfigurationMetrics();
+        metrics.installTask.record(TimeUnit.MICROSECONDS.toNanos(30));
+        metrics.installTask.record(TimeUnit.MICROSECONDS.toNanos(50));
+        final Map<String, Number> values = metrics.getMetrics();
+        assertEquals(2L, values.get("task.install.count"));
+        assertEquals(40L, values.get("task.install.meanMicros"));
+        assertEquals(50L, values.get("task.install.maxMicros"));
+        assertEquals(31L, values.get("task.install.p50Micros"));
+        assertEquals(50L, values.get("task.install.p99Micros"));
+        assertEquals(0L, values.get("task.remove.p99Micros"));
+    }
+
+    @Test
+    void testCoordinatorIsRecorded() {
+        final long hits =
+                ConfigurationMetrics.SHARED.getMetrics().get("coordinator.hits").longValue();
+        final long misses = ConfigurationMetrics.SHARED
+                .getMetrics()
+                .get("coordinator.misses")
+                .longValue();
+        final long waits = ConfigurationMetrics.SHARED
+                .getMetrics()
+                .get("coordinator.wait.count")
+                .longValue();
+
+        Coordinator.SHARED.add(new Coordinator.Operation("metrics.pid", null, false));
+        Coordinator.SHARED.get("metrics.pid", null, false);
+        Coordinator.SHARED.get("metrics.pid", null, false);
+
+        final Map<String, Number> values = ConfigurationMetrics.SHARED.getMetrics();
+        assertTrue(values.get("coordinator.hits").longValue() >= hits + 1);
+        assertTrue(values.get("coordinator.misses").longValue() >= misses + 1);
+        assertTrue(values.get("coordinator.wait.count").longValue() >= waits + 3);
+    }
+
+    @Test
+    void testPrinter() {
+        final ConfigurationMetrics metrics = new ConfigurationMetrics();
+        metrics.update();
+        final ConfigurationMetricsPrinter printer = new ConfigurationMetricsPrinter(metrics);
+
+        final StringWriter text = new StringWriter();
+        printer.print(new PrintWriter(text), Format.TEXT, false);
+        assertTrue(text.toString().contains("cm.update = 1"));
+
+        final StringWriter json = new StringWriter();
+        printer.print(new PrintWriter(json), Format.JSON, false);
+        assertTrue(json.toString().startsWith("{\"cm.delete\":0,"));
+        assertTrue(json.toString().contains(",\"cm.update\":1,"));
+    }
+}
@@ -18,13 +18,19 @@
  */
 package org.apache.sling.installer.factories.configuration.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.apache.sling.installer.api.info.InfoProvider;
 import org.apache.sling.installer.api.info.InstallationState;
 import org.apache.sling.installer.api.info.Resource;
@@ -166,6 +172,65 @@ class ConfigurationSerializerWebConsolePluginTest {
         assertNotNull(outputAsString);
     }
 
+    private HttpServletRequest mockExportRequest(String path, Map<String, String> params) {
+        final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        Mockito.doReturn("/system/console/" + ConfigurationSerializerWebConsolePlugin.LABEL + path)
+                .when(req)
+                .getRequestURI();
+        params.forEach((name, value) -> Mockito.doReturn(value).when(req).getParameter(name));
+        return req;
+    }
+
+    @Test
+    void testExportZip() throws IOException {
+        mockInstallationState();
+        mockExistingConfiguration("a.b", Map.of("key1", "value1"));
+        mockExistingConfiguration("a.c", Map.of("key2", "value2"));
+        mockExistingConfiguration("x.y", Map.of("key3", "value3"));
+
+        final MockSlingJakartaHttpServletResponse resp = context.jakartaResponse();
+        plugin.service(mockExportRequest("/export.zip", Map.of("filter", "a.?")), resp);
+        assertEquals("application/zip", resp.getContentType());
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(resp.getOutput()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(List.of("a.b.cfg.json", "a.c.cfg.json"), List.copyOf(entries.keySet()));
+        assertTrue(entries.get("a.b.cfg.json").contains("\"key1\""));
+        assertFalse(entries.get("a.b.cfg.json").contains("service.pid"));
+    }
+
+    @Test
+    void testExportJson() throws IOException {
+        mockInstallationState();
+        mockExistingConfiguration("a.b", Map.of("key1", "value1"));
+        mockExistingFactoryConfiguration("factory1", "test1", Map.of("key2", "value2"));
+
+        final MockSlingJakartaHttpServletResponse resp = context.jakartaResponse();
+        plugin.service(mockExportRequest("/export.json", Map.of("factoryPid", "factory1")), resp);
+        assertEquals("application/json;charset=UTF-8", resp.getContentType());
+        final String output = resp.getOutputAsString();
+        assertTrue(output.startsWith("{\n\"factory1~test1\":"), output);
+        assertTrue(output.contains("\"key2\""), output);
+        assertFalse(output.contains("a.b"), output);
+    }
+
+    @Test
+    void testGlobMatches() {
+        assertTrue(ConfigurationExporter.matches("a.*", "a.b.c"));
+        assertTrue(ConfigurationExporter.matches("*", ""));
+        assertTrue(ConfigurationExporter.matches("a.?", "a.b"));
+        assertTrue(ConfigurationExporter.matches("*.c", "a.b.c"));
+        assertTrue(ConfigurationExporter.matches("a*b*c", "axxbyyc"));
+        assertFalse(ConfigurationExporter.matches("a.?", "a.bc"));
+        assertFalse(ConfigurationExporter.matches("a*b", "a.c"));
+        assertEquals("\"a\\\"b\\\\\\u0001\"", ConfigurationExporter.toJsonString("a\"b\\\u0001"));
+    }
+
     private void mockComponentDescriptionDTO(String configPid, Map<String, Object> properties) {
         ComponentDescriptionDTO mockDTO = Mockito.mock(ComponentDescriptionDTO.class);
         mockDTO.bundle = Mockito.mock(BundleDTO.class);
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CoordinatorTest {
+
+    @Test
+    void testGetMatchesPidFactoryPidAndType() {
+        final Coordinator.Operation update = new Coordinator.Operation("ct.a", null, false);
+        final Coordinator.Operation delete = new Coordinator.Operation("ct.a", null, true);
+        final Coordinator.Operation factory = new Coordinator.Operation("ct.f~a", "ct.f", false);
+        Coordinator.SHARED.add(update);
+        Coordinator.SHARED.add(delete);
+        Coordinator.SHARED.add(factory);
+
+        assertNull(Coordinator.SHARED.get("ct.a", "ct.f", false));
+        assertNull(Coordinator.SHARED.get("ct.f~a", null, false));
+        assertSame(delete, Coordinator.SHARED.get("ct.a", null, true));
+        assertSame(update, Coordinator.SHARED.get("ct.a", null, false));
+        assertSame(factory, Coordinator.SHARED.get("ct.f~a", "ct.f", false));
+
+        assertNull(Coordinator.SHARED.get("ct.a", null, true));
+        assertNull(Coordinator.SHARED.get("ct.a", null, false));
+        assertNull(Coordinator.SHARED.get("ct.f~a", "ct.f", false));
+    }
+
+    @Test
+    void testMultipleOperationsForSamePid() {
+        final Coordinator.Operation first = new Coordinator.Operation("ct.b", null, false);
+        final Coordinator.Operation second = new Coordinator.Operation("ct.b", null, false);
+        Coordinator.SHARED.add(first);
+        Coordinator.SHARED.add(second);
+
+        assertSame(first, Coordinator.SHARED.get("ct.b", null, false));
+        assertSame(second, Coordinator.SHARED.get("ct.b", null, false));
+        assertNull(Coordinator.SHARED.get("ct.b", null, false));
+    }
+
+    @Test
+    void testChangeCountMatchesUntilChangedBySomeoneElse() {
+        final Coordinator.Operation update = new Coordinator.Operation("ct.d", null, false, 3);
+        Coordinator.SHARED.add(update);
+
+        assertSame(update, Coordinator.SHARED.get("ct.d", null, false, 3));
+        // a second event for the same state is an own change as well
+        assertSame(update, Coordinator.SHARED.get("ct.d", null, false, 3));
+        // changed by someone else
+        assertNull(Coordinator.SHARED.get("ct.d", null, false, 4));
+        assertNull(Coordinator.SHARED.get("ct.d", null, false, 3));
+    }
+
+    @Test
+    void testChangeCountLatestOperationWins() {
+        final Coordinator.Operation first = new Coordinator.Operation("ct.e", null, false, 1);
+        final Coordinator.Operation second = new Coordinator.Operation("ct.e", null, false, 2);
+        Coordinator.SHARED.add(first);
+        Coordinator.SHARED.add(second);
+
+        assertSame(second, Coordinator.SHARED.get("ct.e", null, false, 2));
+        assertSame(second, Coordinator.SHARED.get("ct.e", null, false, 2));
+    }
+
+    @Test
+    void testChangeCountDelete() {
+        final Coordinator.Operation update = new Coordinator.Operation("ct.g", null, false, 1);
+        Coordinator.SHARED.add(update);
+        // deleted by someone else drops the update
+        assertNull(Coordinator.SHARED.get("ct.g", null, true, -1));
+        assertNull(Coordinator.SHARED.get("ct.g", null, false, 1));
+
+        final Coordinator.Operation delete = new Coordinator.Operation("ct.g", null, true, 2);
+        Coordinator.SHARED.add(delete);
+        assertSame(delete, Coordinator.SHARED.get("ct.g", null, true, -1));
+        assertNull(Coordinator.SHARED.get("ct.g", null, true, -1));
+    }
+
+    @Test
+    void testLockForFactoryConfigurations() {
+        assertSame(Coordinator.SHARED.getLock("ct.c", null), Coordinator.SHARED.getLock("ct.c", null));
+        assertSame(
+                Coordinator.SHARED.getLock("ct.f~a", "ct.f"),
+                Coordinator.SHARED.getLock("ct.f.0a1b2c3d-0000-0000-0000-000000000000", "ct.f"));
+    }
+}
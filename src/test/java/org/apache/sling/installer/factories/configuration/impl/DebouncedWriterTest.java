@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DebouncedWriterTest {
+
+    @Test
+    void testOnlyLatestWriteIsExecuted() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final DebouncedWriter writer = new DebouncedWriter(50, done::countDown);
+        final List<String> written = new CopyOnWriteArrayList<>();
+        final Object lock = new Object();
+        try {
+            assertTrue(writer.schedule("a", lock, () -> written.add("a1")));
+            assertTrue(writer.schedule("a", lock, () -> written.add("a2")));
+            assertTrue(writer.schedule("a", lock, () -> written.add("a3")));
+            assertEquals(1, writer.size());
+            assertNull(writer.getResult("a"));
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of("a3"), written);
+            assertEquals(0, writer.size());
+            assertEquals(Boolean.TRUE, writer.getResult("a"));
+            // the result is only returned once
+            assertNull(writer.getResult("a"));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testFailedWriteIsNotRetried() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final DebouncedWriter writer = new DebouncedWriter(10, done::countDown);
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            assertTrue(writer.schedule("a", new Object(), () -> {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("deleted");
+            }));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(Boolean.FALSE, writer.getResult("a"));
+            Thread.sleep(50);
+            assertEquals(1, attempts.get());
+            assertEquals(0, writer.size());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testCancelAndStop() {
+        final DebouncedWriter writer = new DebouncedWriter(60000);
+        final List<String> written = new CopyOnWriteArrayList<>();
+        final Object lock = new Object();
+        assertTrue(writer.schedule("a", lock, () -> written.add("a")));
+        assertTrue(writer.schedule("b", lock, () -> written.add("b")));
+
+        writer.cancel("a");
+        assertEquals(1, writer.size());
+        assertNull(writer.getResult("a"));
+
+        // pending writes are discarded, not written
+        writer.stop();
+        assertEquals(List.of(), written);
+        assertEquals(0, writer.size());
+        assertFalse(writer.schedule("c", lock, () -> written.add("c")));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.event.InstallationEvent;
+import org.apache.sling.installer.api.info.InfoProvider;
+import org.apache.sling.installer.api.info.InstallationState;
+import org.apache.sling.installer.api.info.Resource;
+import org.apache.sling.installer.api.info.ResourceGroup;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultPropertiesIndexTest {
+
+    private List<String> oldMergeSchemes;
+
+    private InfoProvider infoProvider;
+
+    private InstallationState state;
+
+    @BeforeEach
+    void setup() {
+        oldMergeSchemes = Activator.MERGE_SCHEMES;
+        Activator.MERGE_SCHEMES = List.of("launchpad");
+        infoProvider = Mockito.mock(InfoProvider.class);
+        state = Mockito.mock(InstallationState.class);
+        Mockito.when(infoProvider.getInstallationState()).thenReturn(state);
+    }
+
+    @AfterEach
+    void cleanup() {
+        Activator.MERGE_SCHEMES = oldMergeSchemes;
+    }
+
+    private static Resource resource(
+            final String entityId, final String scheme, final String digest, final Map<String, Object> props) {
+        final Resource rsrc = Mockito.mock(Resource.class);
+        Mockito.when(rsrc.getEntityId()).thenReturn(entityId);
+        Mockito.when(rsrc.getScheme()).thenReturn(scheme);
+        Mockito.when(rsrc.getURL()).thenReturn(scheme + ":/" + entityId);
+        Mockito.when(rsrc.getDigest()).thenReturn(digest);
+        Mockito.when(rsrc.getDictionary()).thenReturn(new Hashtable<>(props));
+        return rsrc;
+    }
+
+    private static InstallationEvent processed(final String type, final String entityId) {
+        final TaskResource rsrc = Mockito.mock(TaskResource.class);
+        Mockito.when(rsrc.getType()).thenReturn(type);
+        Mockito.when(rsrc.getEntityId()).thenReturn(entityId);
+        final InstallationEvent event = Mockito.mock(InstallationEvent.class);
+        Mockito.when(event.getType()).thenReturn(InstallationEvent.TYPE.PROCESSED);
+        Mockito.when(event.getSource()).thenReturn(rsrc);
+        return event;
+    }
+
+    private static ResourceGroup group(final Resource... resources) {
+        final ResourceGroup group = Mockito.mock(ResourceGroup.class);
+        Mockito.when(group.getResources()).thenReturn(List.of(resources));
+        return group;
+    }
+
+    @Test
+    void testInactive() {
+        final DefaultPropertiesIndex index = new DefaultPropertiesIndex();
+        assertFalse(index.isActive(infoProvider));
+        index.activate(infoProvider);
+        assertTrue(index.isActive(infoProvider));
+        assertFalse(index.isActive(Mockito.mock(InfoProvider.class)));
+        index.deactivate();
+        assertFalse(index.isActive(infoProvider));
+    }
+
+    @Test
+    void testMergedProperties() {
+        final ResourceGroup a = group(
+                resource("config:a", "jcrinstall", "1", Map.of("x", "jcr")),
+                resource("config:a", "launchpad", "2", Map.of("x", "top", "y", "1")),
+                resource("config:a", "launchpad", "3", Map.of("x", "bottom", "z", "2")));
+        final ResourceGroup b = group(resource("config:b", "jcrinstall", "4", Map.of("x", "b")));
+        Mockito.when(state.getInstalledResources()).thenReturn(List.of(a, b));
+
+        final DefaultPropertiesIndex index = new DefaultPropertiesIndex();
+        index.activate(infoProvider);
+
+        final Dictionary<String, Object> props = index.get("config:a");
+        assertEquals(3, props.size());
+        assertEquals("top", props.get("x"));
+        assertEquals("1", props.get("y"));
+        assertEquals("2", props.get("z"));
+        assertNull(index.get("config:b"));
+        assertNull(index.get("config:c"));
+
+        // same answer from the index without another scan
+        assertSame(props, index.get("config:a"));
+        Mockito.verify(infoProvider, Mockito.times(1)).getInstallationState();
+    }
+
+    @Test
+    void testUpdateOnInstallerEvent() {
+        final ResourceGroup a = group(resource("config:a", "launchpad", "1", Map.of("x", "1")));
+        final ResourceGroup b = group(resource("config:b", "launchpad", "2", Map.of("x", "2")));
+        Mockito.when(state.getInstalledResources()).thenReturn(List.of(a, b));
+
+        final DefaultPropertiesIndex index = new DefaultPropertiesIndex();
+        index.activate(infoProvider);
+        final Dictionary<String, Object> propsA = index.get("config:a");
+        final Dictionary<String, Object> propsB = index.get("config:b");
+
+        final ResourceGroup changedB = group(resource("config:b", "launchpad", "3", Map.of("x", "3")));
+        Mockito.when(state.getInstalledResources()).thenReturn(List.of(a, changedB));
+        index.onEvent(processed(InstallableResource.TYPE_BUNDLE, "bundle:b"));
+
+        // processed bundles don't change the merge sources
+        assertSame(propsB, index.get("config:b"));
+        Mockito.verify(infoProvider, Mockito.times(1)).getInstallationState();
+
+        index.onEvent(processed(InstallableResource.TYPE_CONFIG, "config:b"));
+
+        // other entities are answered from the index
+        assertSame(propsA, index.get("config:a"));
+        Mockito.verify(infoProvider, Mockito.times(1)).getInstallationState();
+        // only the changed entity is looked up again
+        assertNotSame(propsB, index.get("config:b"));
+        assertEquals("3", index.get("config:b").get("x"));
+        assertSame(index.get("config:b"), index.get("config:b"));
+        Mockito.verify(infoProvider, Mockito.times(2)).getInstallationState();
+
+        // unchanged sources are not merged again
+        index.onEvent(processed(InstallableResource.TYPE_CONFIG, "config:a"));
+        assertSame(propsA, index.get("config:a"));
+
+        // removed entities are removed from the index
+        Mockito.when(state.getInstalledResources()).thenReturn(List.of(a));
+        index.onEvent(processed(InstallableResource.TYPE_CONFIG, "config:b"));
+        assertNull(index.get("config:b"));
+    }
+}
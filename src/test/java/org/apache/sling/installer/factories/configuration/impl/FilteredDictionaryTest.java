@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Constants;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FilteredDictionaryTest {
+
+    private static Dictionary<String, Object> config() {
+        final Dictionary<String, Object> config = new Hashtable<>();
+        config.put(Constants.SERVICE_PID, "a.b");
+        config.put("same", "value");
+        config.put("different", new String[] {"x", "y"});
+        config.put("other", 5);
+        return config;
+    }
+
+    @Test
+    void testFilterConfiguration() {
+        final Dictionary<String, Object> view = ConfigUtil.filterConfiguration(config());
+        assertEquals(3, view.size());
+        assertNull(view.get(Constants.SERVICE_PID));
+        assertEquals("value", view.get("same"));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove("same"));
+        assertThrows(UnsupportedOperationException.class, () -> view.put("a", "b"));
+    }
+
+    @Test
+    void testFilterRedundantProperties() {
+        final Dictionary<String, Object> base = new Hashtable<>();
+        base.put("same", "value");
+        base.put("different", new String[] {"x"});
+        base.put("other", 5L);
+
+        final Dictionary<String, Object> view = ConfigUtil.filterConfiguration(config(), base);
+        final List<String> keys = Collections.list(view.keys());
+        assertEquals(Collections.singletonList("different"), keys);
+        assertNull(view.get("same"));
+        assertNull(view.get("other"));
+        assertEquals(1, view.size());
+        assertEquals(1, CompactDictionary.copyOf(view).size());
+    }
+}
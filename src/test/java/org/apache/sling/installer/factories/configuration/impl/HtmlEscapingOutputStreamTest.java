@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HtmlEscapingOutputStreamTest {
+
+    @Test
+    void testEscaping() throws IOException {
+        final StringWriter writer = new StringWriter();
+        try (HtmlEscapingOutputStream out = new HtmlEscapingOutputStream(writer)) {
+            out.write("{\"a\": \"</textarea><b>&amp;\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("{\"a\": \"&lt;/textarea&gt;&lt;b&gt;&amp;amp;\"}", writer.toString());
+    }
+
+    @Test
+    void testMultiByteCharactersAcrossWritesAndBuffers() throws IOException {
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            expected.append("ä€😀<");
+        }
+        final byte[] bytes = expected.toString().getBytes(StandardCharsets.UTF_8);
+        final StringWriter writer = new StringWriter();
+        final HtmlEscapingOutputStream out = new HtmlEscapingOutputStream(writer);
+        int pos = 0;
+        int chunk = 1;
+        while (pos < bytes.length) {
+            final int len = Math.min(chunk, bytes.length - pos);
+            if (len == 1) {
+                out.write(bytes[pos]);
+            } else {
+                out.write(bytes, pos, len);
+            }
+            pos += len;
+            chunk = chunk % 13 + 1;
+            if (pos % 7 == 0) {
+                out.flush();
+            }
+        }
+        out.close();
+        assertEquals(expected.toString().replace("<", "&lt;"), writer.toString());
+        assertThrows(IOException.class, () -> out.write(1));
+    }
+}
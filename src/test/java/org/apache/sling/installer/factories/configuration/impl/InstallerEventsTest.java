@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InstallerEventsTest {
+
+    private static final String EVENT_NAME = "org.apache.sling.installer.configuration.MetatypeLookup";
+
+    @Test
+    void testNoEventWithoutRecording() {
+        final Object event = InstallerEvents.begin(InstallerEvents.Type.METATYPE_LOOKUP);
+        assertNull(event);
+        // no-op
+        InstallerEvents.end(event, "a.pid", null, "found");
+    }
+
+    @Test
+    void testEventIsRecorded() throws Exception {
+        final Path file = Files.createTempFile("installer", ".jfr");
+        try {
+            try (final Recording recording = new Recording()) {
+                recording.enable(EVENT_NAME);
+                recording.disable("org.apache.sling.installer.configuration.Install");
+                recording.start();
+                InstallerEvents.end(
+                        InstallerEvents.begin(InstallerEvents.Type.METATYPE_LOOKUP), "a~b", "a", "notFound");
+                // disabled in the recording
+                assertNull(InstallerEvents.begin(InstallerEvents.Type.INSTALL));
+                recording.stop();
+                recording.dump(file);
+            }
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            final RecordedEvent event = events.get(0);
+            assertEquals(EVENT_NAME, event.getEventType().getName());
+            assertEquals("a~b", event.getString("pid"));
+            assertEquals("a", event.getString("factoryPid"));
+            assertEquals("notFound", event.getString("outcome"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayeredDictionaryTest {
+
+    private static Dictionary<String, Object> dict(final Object... keyValues) {
+        final Dictionary<String, Object> result = new Hashtable<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            result.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    void testFirstLayerWins() {
+        final List<Dictionary<String, Object>> layers =
+                Arrays.asList(dict("a", "1", "b", "2"), dict("b", "x", "c", "3"), dict("c", "y", "d", "4"));
+        final LayeredDictionary layered = new LayeredDictionary(layers);
+
+        assertEquals("1", layered.get("a"));
+        assertEquals("2", layered.get("b"));
+        assertEquals("3", layered.get("c"));
+        assertEquals("4", layered.get("d"));
+        assertNull(layered.get("e"));
+        assertEquals(4, layered.size());
+        assertFalse(layered.isEmpty());
+
+        final List<String> keys = Collections.list(layered.keys());
+        Collections.sort(keys);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), keys);
+        final List<Object> values = new ArrayList<>(Collections.list(layered.elements()));
+        assertEquals(4, values.size());
+        assertFalse(values.contains("x"));
+        assertFalse(values.contains("y"));
+
+        // flattening does not modify the layers
+        final Dictionary<String, Object> merged = layered.flatten();
+        assertEquals(4, merged.size());
+        assertEquals("1", layers.get(0).get("a"));
+        assertTrue(ConfigUtil.isSameData(merged, layered));
+        assertEquals(ConfigFingerprint.compute(merged), ConfigFingerprint.compute(layered));
+    }
+
+    @Test
+    void testImmutable() {
+        final LayeredDictionary layered = new LayeredDictionary(Arrays.asList(dict("a", "1"), dict()));
+        assertThrows(UnsupportedOperationException.class, () -> layered.put("b", "2"));
+        assertThrows(UnsupportedOperationException.class, () -> layered.remove("a"));
+
+        final Dictionary<String, Object> flat = layered.flatten();
+        flat.put("b", "2");
+        assertNull(layered.get("b"));
+    }
+
+    @Test
+    void testSingleLayerIsShared() {
+        final Dictionary<String, Object> layer = dict("a", "1");
+        assertSame(layer, LayeredDictionary.of(Collections.singletonList(layer)));
+        assertTrue(new LayeredDictionary(Arrays.asList(dict(), dict())).isEmpty());
+    }
+}
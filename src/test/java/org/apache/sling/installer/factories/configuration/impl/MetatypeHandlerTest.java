@@ -26,6 +26,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeInformation;
 import org.osgi.service.metatype.MetaTypeService;
@@ -113,4 +114,114 @@ class MetatypeHandlerTest {
         assertEquals(4, props.get("d"));
         assertEquals(Arrays.asList("/a", "/b"), props.get("g"));
     }
+
+    @Test
+    void testIndexedLookup() {
+        final BundleContext bundleContext = Mockito.mock(BundleContext.class);
+        final MetaTypeService mts = Mockito.mock(MetaTypeService.class);
+        final Bundle other = Mockito.mock(Bundle.class);
+        Mockito.when(other.getBundleId()).thenReturn(1L);
+        final Bundle bundle = Mockito.mock(Bundle.class);
+        Mockito.when(bundle.getBundleId()).thenReturn(2L);
+        Mockito.when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        Mockito.when(bundleContext.getBundles()).thenReturn(new Bundle[] {other, bundle});
+        Mockito.when(bundleContext.getBundle(2L)).thenReturn(bundle);
+
+        final MetaTypeInformation info = Mockito.mock(MetaTypeInformation.class);
+        Mockito.when(info.getPids()).thenReturn(new String[] {"my.pid"});
+        Mockito.when(mts.getMetaTypeInformation(bundle)).thenReturn(info);
+
+        final ObjectClassDefinition ocd = Mockito.mock(ObjectClassDefinition.class);
+        Mockito.when(info.getObjectClassDefinition("my.pid", null)).thenReturn(ocd);
+        final AttributeDefinition ada = Mockito.mock(AttributeDefinition.class);
+        Mockito.when(ada.getID()).thenReturn("a");
+        Mockito.when(ada.getDefaultValue()).thenReturn(new String[] {"1"});
+        Mockito.when(ocd.getAttributeDefinitions(ObjectClassDefinition.ALL))
+                .thenReturn(new AttributeDefinition[] {ada});
+
+        final MetatypeHandler handler = new MetatypeHandler(mts, bundleContext);
+        handler.open();
+        Mockito.verify(bundleContext).addBundleListener(handler);
+
+        for (int i = 0; i < 3; i++) {
+            final Dictionary<String, Object> props = new Hashtable<>();
+            props.put("a", "1");
+            handler.updateConfiguration(null, "my.pid", props, null);
+            assertEquals(0, props.size());
+        }
+        // the bundles are only searched once, the definition is cached
+        Mockito.verify(bundleContext, Mockito.times(1)).getBundles();
+        Mockito.verify(mts, Mockito.times(2)).getMetaTypeInformation(bundle);
+
+        // after a bundle change, only the changed bundle is searched again
+        Mockito.when(info.getPids()).thenReturn(new String[0]);
+        handler.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle));
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put("a", "1");
+        handler.updateConfiguration(null, "my.pid", props, null);
+        assertEquals(1, props.size());
+        Mockito.verify(bundleContext, Mockito.times(1)).getBundles();
+        Mockito.verify(mts, Mockito.times(1)).getMetaTypeInformation(other);
+        Mockito.verify(mts, Mockito.times(3)).getMetaTypeInformation(bundle);
+
+        handler.close();
+        Mockito.verify(bundleContext).removeBundleListener(handler);
+    }
+
+    @Test
+    void testIndexedLookupWithSeveralProviders() {
+        final BundleContext bundleContext = Mockito.mock(BundleContext.class);
+        final MetaTypeService mts = Mockito.mock(MetaTypeService.class);
+        final Bundle first = Mockito.mock(Bundle.class);
+        Mockito.when(first.getBundleId()).thenReturn(1L);
+        Mockito.when(first.getState()).thenReturn(Bundle.ACTIVE);
+        final Bundle second = Mockito.mock(Bundle.class);
+        Mockito.when(second.getBundleId()).thenReturn(2L);
+        Mockito.when(bundleContext.getBundles()).thenReturn(new Bundle[] {first, second});
+        Mockito.when(bundleContext.getBundle(1L)).thenReturn(first);
+        Mockito.when(bundleContext.getBundle(2L)).thenReturn(second);
+
+        final MetaTypeInformation firstInfo = Mockito.mock(MetaTypeInformation.class);
+        Mockito.when(firstInfo.getPids()).thenReturn(new String[] {"my.pid"});
+        final ObjectClassDefinition firstOcd = ocd("1");
+        Mockito.when(firstInfo.getObjectClassDefinition("my.pid", null)).thenReturn(firstOcd);
+        Mockito.when(mts.getMetaTypeInformation(first)).thenReturn(firstInfo);
+        final MetaTypeInformation secondInfo = Mockito.mock(MetaTypeInformation.class);
+        Mockito.when(secondInfo.getPids()).thenReturn(new String[] {"my.pid"});
+        final ObjectClassDefinition secondOcd = ocd("2");
+        Mockito.when(secondInfo.getObjectClassDefinition("my.pid", null)).thenReturn(secondOcd);
+        Mockito.when(mts.getMetaTypeInformation(second)).thenReturn(secondInfo);
+
+        final MetatypeHandler handler = new MetatypeHandler(mts, bundleContext);
+        handler.open();
+
+        // the bundle with the lowest id wins
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("a", "1");
+        handler.updateConfiguration(null, "my.pid", props, null);
+        assertEquals(0, props.size());
+
+        // once it is gone, the definition of the other provider is used
+        Mockito.when(first.getState()).thenReturn(Bundle.UNINSTALLED);
+        handler.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, first));
+        props = new Hashtable<>();
+        props.put("a", "1");
+        handler.updateConfiguration(null, "my.pid", props, null);
+        assertEquals(1, props.size());
+        props.put("a", "2");
+        handler.updateConfiguration(null, "my.pid", props, null);
+        assertEquals(0, props.size());
+        Mockito.verify(bundleContext, Mockito.times(1)).getBundles();
+
+        handler.close();
+    }
+
+    private static ObjectClassDefinition ocd(final String defaultValue) {
+        final ObjectClassDefinition ocd = Mockito.mock(ObjectClassDefinition.class);
+        final AttributeDefinition ad = Mockito.mock(AttributeDefinition.class);
+        Mockito.when(ad.getID()).thenReturn("a");
+        Mockito.when(ad.getDefaultValue()).thenReturn(new String[] {defaultValue});
+        Mockito.when(ocd.getAttributeDefinitions(ObjectClassDefinition.ALL)).thenReturn(new AttributeDefinition[] {ad});
+        return ocd;
+    }
 }
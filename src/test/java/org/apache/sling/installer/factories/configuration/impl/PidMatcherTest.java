@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.factories.configuration.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PidMatcherTest {
+
+    @Test
+    void testMatches() {
+        final PidMatcher matcher = PidMatcher.parse("a.b, org.apache.sling.*,c~*");
+        assertTrue(matcher.matches("a.b"));
+        assertFalse(matcher.matches("a.b.c"));
+        assertTrue(matcher.matches("org.apache.sling.foo"));
+        assertTrue(matcher.matches("org.apache.sling.foo~bar"));
+        assertFalse(matcher.matches("org.apache.felix.foo"));
+        assertTrue(matcher.matches("c~name"));
+        assertFalse(matcher.matches("c"));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    void testEmptyPatterns() {
+        assertNull(PidMatcher.parse(null));
+        assertNull(PidMatcher.parse(""));
+        assertNull(PidMatcher.parse(" , "));
+        assertTrue(PidMatcher.parse("*").matches("a"));
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.sling.installer.factories.configuration.impl;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -81,4 +82,23 @@ class SortedDictionaryTest {
         assertEquals(sortedDictionary, sortedDictionary2);
         assertEquals(sortedDictionary.hashCode(), sortedDictionary2.hashCode());
     }
+
+    @Test
+    void testSortedKeysFollowModifications() {
+        Dictionary<String, Object> dictionary = new Hashtable<>();
+        dictionary.put("b", "2");
+        SortedDictionary<String, Object> sortedDictionary = new SortedDictionary<>(dictionary);
+        assertEquals(List.of("b"), Collections.list(sortedDictionary.keys()));
+
+        sortedDictionary.put("a", "1");
+        assertEquals(List.of("a", "b"), Collections.list(sortedDictionary.keys()));
+        sortedDictionary.put("a", "3");
+        assertEquals(List.of("3", "2"), Collections.list(sortedDictionary.elements()));
+
+        sortedDictionary.put("c", "4");
+        assertEquals(List.of("a", "b", "c"), Collections.list(sortedDictionary.keys()));
+
+        sortedDictionary.remove("b");
+        assertEquals(List.of("a", "c"), Collections.list(sortedDictionary.keys()));
+    }
 }